@@ -37,7 +37,8 @@ CREATE TABLE `sched_job_log` (
   `update_time` datetime DEFAULT NULL,
   `update_user` varchar(100) DEFAULT NULL,
   PRIMARY KEY (`id`),
-  UNIQUE KEY `sched_job_log_id_uindex` (`id`)
+  UNIQUE KEY `sched_job_log_id_uindex` (`id`),
+  KEY `idx_sched_job_log_job_time` (`job_id`,`create_time`,`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='调度任务日志表'
 ;
 
@@ -61,7 +62,8 @@ CREATE TABLE `sys_access_log` (
   `update_user` varchar(100) DEFAULT NULL COMMENT '更新人',
   `remark` varchar(100) DEFAULT NULL COMMENT '备注',
   PRIMARY KEY (`id`),
-  UNIQUE KEY `sys_access_log_id_uindex` (`id`)
+  UNIQUE KEY `sys_access_log_id_uindex` (`id`),
+  KEY `idx_sys_access_log_time` (`create_time`,`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='系统_访问日志'
 ;
 
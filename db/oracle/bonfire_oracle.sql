@@ -103,6 +103,10 @@ comment on column SCHED_JOB_LOG.MESSAGE is '出错信息'
 comment on column SCHED_JOB_LOG.DURATION_MILLIS is '执行消耗时间，单位毫秒'
 /
 
+create index IDX_SCHED_JOB_LOG_JOB_TIME
+	on SCHED_JOB_LOG (JOB_ID, CREATE_TIME, ID)
+/
+
 -- ----------------------------
 -- 系统_访问日志
 -- ----------------------------
@@ -173,6 +177,10 @@ comment on column SYS_ACCESS_LOG.UPDATE_TIME is '更新时间'
 comment on column SYS_ACCESS_LOG.REMARK is '备注'
 /
 
+create index IDX_SYS_ACCESS_LOG_TIME
+	on SYS_ACCESS_LOG (CREATE_TIME, ID)
+/
+
 -- ----------------------------
 -- 系统_权限
 -- ----------------------------
@@ -3,12 +3,14 @@ package com.izneus.bonfire;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * @author Izneus
  * @date 2020/06/30
  */
 @SpringBootApplication
+@EnableScheduling
 @Import(cn.hutool.extra.spring.SpringUtil.class)
 public class BonfireApplication {
 
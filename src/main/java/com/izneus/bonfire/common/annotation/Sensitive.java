@@ -0,0 +1,16 @@
+package com.izneus.bonfire.common.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 敏感字段注解，访问日志记录请求参数时该字段的值会被替换为*，
+ * 只影响访问日志的序列化，不影响接口本身的json读写
+ *
+ * @author Izneus
+ * @date 2021/03/26
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface Sensitive {
+}
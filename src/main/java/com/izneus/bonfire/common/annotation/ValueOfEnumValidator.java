@@ -1,31 +1,25 @@
 package com.izneus.bonfire.common.annotation;
 
-import cn.hutool.core.util.EnumUtil;
+import com.izneus.bonfire.common.constant.Dict;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
- * ValueOfEnum注解的校验器，校验参数是否是合法枚举值，可以自行选择决定是校验枚举name或自定义字段value，当前用使用的字段名是value
+ * ValueOfEnum注解的校验器，校验参数是否是合法枚举值，枚举需实现Dict.ValueEnum，校验的是字典值value
  *
  * @author Izneus
  * @date 2020/12/15
  */
 public class ValueOfEnumValidator implements ConstraintValidator<ValueOfEnum, CharSequence> {
-    private List<String> acceptedValues;
+    private Map<String, ?> acceptedValues;
 
     @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public void initialize(ValueOfEnum annotation) {
-        /// 这里取的枚举name
-        /*acceptedValues = Stream.of(annotation.enumClass().getEnumConstants())
-                .map(Enum::name)
-                .collect(Collectors.toList());*/
-
-        // 这里取的枚举项的自定义字段value
-        List<Object> values = EnumUtil.getFieldValues(annotation.enumClass(), "value");
-        acceptedValues = values.stream().map(String::valueOf).collect(Collectors.toList());
+        // 和Dict.X.of共用同一份字典值映射
+        acceptedValues = Dict.valueMap((Class) annotation.enumClass());
     }
 
     @Override
@@ -33,6 +27,6 @@ public class ValueOfEnumValidator implements ConstraintValidator<ValueOfEnum, Ch
         if (value == null) {
             return true;
         }
-        return acceptedValues.contains(String.valueOf(value));
+        return acceptedValues.containsKey(value.toString());
     }
 }
\ No newline at end of file
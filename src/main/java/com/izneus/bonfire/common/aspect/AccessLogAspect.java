@@ -1,15 +1,10 @@
 package com.izneus.bonfire.common.aspect;
 
 import cn.hutool.extra.servlet.ServletUtil;
-import cn.hutool.http.useragent.UserAgent;
-import cn.hutool.http.useragent.UserAgentUtil;
-import cn.hutool.json.JSONArray;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
 import com.izneus.bonfire.common.annotation.AccessLog;
 import com.izneus.bonfire.common.util.HttpContextUtil;
-import com.izneus.bonfire.module.system.entity.SysAccessLogEntity;
-import com.izneus.bonfire.module.system.service.SysAccessLogService;
+import com.izneus.bonfire.module.security.CurrentUserUtil;
+import com.izneus.bonfire.module.security.SecurityUser;
 import lombok.RequiredArgsConstructor;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -20,6 +15,8 @@ import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * api访问日志切面，注意不要和slf4j等日志系统混淆
@@ -32,9 +29,8 @@ import java.lang.reflect.Method;
 @RequiredArgsConstructor
 public class AccessLogAspect {
 
-    private final SysAccessLogService sysAccessLogService;
-
-//    ThreadLocal<Long> currentTime = new ThreadLocal<>();
+    private final AccessLogWriter accessLogWriter;
+    private final ParamSerializer paramSerializer;
 
     /**
      * 配置切入点
@@ -45,14 +41,24 @@ public class AccessLogAspect {
 
     @Around("logPointcut()")
     public Object around(ProceedingJoinPoint point) throws Throwable {
-        // 先执行业务
-        Object result = point.proceed();
-        // 处理join point
-        handlePoint(point);
-        return result;
+        // 开始时间先记下来，请求时间不受业务耗时影响
+        Date createTime = new Date();
+        // nanoTime是单调时钟，不受系统时间调整影响，适合计算耗时
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            return point.proceed();
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            // 业务失败也要记录日志
+            long elapsedTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            handlePoint(point, createTime, elapsedTime, error);
+        }
     }
 
-    private void handlePoint(ProceedingJoinPoint point) {
+    private void handlePoint(ProceedingJoinPoint point, Date createTime, long elapsedTime, Throwable error) {
         MethodSignature signature = (MethodSignature) point.getSignature();
         Method method = signature.getMethod();
         AccessLog annotation = method.getAnnotation(AccessLog.class);
@@ -60,39 +66,24 @@ public class AccessLogAspect {
         String className = point.getTarget().getClass().getName();
         String funcName = signature.getName();
         String methodName = className + "." + funcName + "()";
-        // 请求参数，序列化为json字符串
-        Object[] argValues = point.getArgs();
-        JSONArray argJson = JSONUtil.parseArray(argValues);
-        String param = null;
-        // 注意数据脱敏，特别是用户密码
-        if (argJson.size() > 0) {
-            String loginMethod = "com.izneus.bonfire.module.system.controller.v1.LoginController.login()";
-            if (loginMethod.equals(methodName)) {
-                ((JSONObject) argJson.get(0)).set("password", "*");
-            }
-            param = argJson.toString();
-        }
-        // 注解描述
-        String description = annotation.value();
         // 获取request
         HttpServletRequest request = HttpContextUtil.getHttpServletRequest();
-        // 客户端ip
-        String clientIp = ServletUtil.getClientIP(request);
-        // ua和解析出的浏览器和系统
-        UserAgent ua = UserAgentUtil.parse(request.getHeader("User-Agent"));
-        String browser = ua.getBrowser().toString();
-        String os = ua.getOs().toString();
-        // todo 请求用户和请求耗费时间
+        // 请求用户，登录接口等匿名访问时为空
+        SecurityUser user = CurrentUserUtil.getFillUser();
 
-        // 写库
-        SysAccessLogEntity accessLogEntity = new SysAccessLogEntity();
-        accessLogEntity.setMethod(methodName);
-        accessLogEntity.setParam(param);
-        accessLogEntity.setDescription(description);
-        accessLogEntity.setClientIp(clientIp);
-        accessLogEntity.setBrowser(browser);
-        accessLogEntity.setOs(os);
-        accessLogEntity.setUserAgent(request.getHeader("User-Agent"));
-        sysAccessLogService.save(accessLogEntity);
+        // 请求线程上只采集原始数据，参数序列化、ua解析和写库都交给后台线程，
+        // 请求结束后文件、request等对象会被容器回收，先去掉这些参数
+        accessLogWriter.submit(AccessLogRecord.builder()
+                .method(methodName)
+                .args(paramSerializer.snapshot(point.getArgs()))
+                .description(annotation.value())
+                .clientIp(ServletUtil.getClientIP(request))
+                .userAgent(request.getHeader("User-Agent"))
+                .createTime(createTime)
+                .elapsedTime(elapsedTime)
+                .userId(user == null ? null : user.getId())
+                .username(user == null || "*".equals(user.getUsername()) ? null : user.getUsername())
+                .error(error)
+                .build());
     }
 }
@@ -0,0 +1,57 @@
+package com.izneus.bonfire.common.aspect;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * 请求线程上采集的访问日志原始数据，参数序列化、ua解析等耗时操作留给后台写库线程处理
+ *
+ * @author Izneus
+ * @date 2021/03/24
+ */
+@Getter
+@Builder
+public class AccessLogRecord {
+    /**
+     * 方法路径
+     */
+    private final String method;
+    /**
+     * 请求参数，未序列化，文件、servlet对象等请求结束后不能访问的参数已经置为null
+     */
+    private final Object[] args;
+    /**
+     * 注解描述
+     */
+    private final String description;
+    /**
+     * 客户端ip
+     */
+    private final String clientIp;
+    /**
+     * 原始的User-Agent请求头
+     */
+    private final String userAgent;
+    /**
+     * 请求时间
+     */
+    private final Date createTime;
+    /**
+     * 请求耗时，单位毫秒
+     */
+    private final Long elapsedTime;
+    /**
+     * 发起请求的用户id，未登录时为空
+     */
+    private final String userId;
+    /**
+     * 发起请求的用户名，未登录时为空
+     */
+    private final String username;
+    /**
+     * 业务抛出的异常，正常返回时为空
+     */
+    private final Throwable error;
+}
@@ -0,0 +1,238 @@
+package com.izneus.bonfire.common.aspect;
+
+import cn.hutool.core.util.StrUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.system.entity.SysAccessLogEntity;
+import com.izneus.bonfire.module.system.service.SysAccessLogService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 访问日志的异步写库，请求线程只把原始数据放入有界队列，
+ * 后台线程按数量或时间攒批后批量insert，队列满时按配置的策略丢弃、采样或阻塞
+ *
+ * @author Izneus
+ * @date 2021/03/24
+ */
+@Slf4j
+@Component
+public class AccessLogWriter {
+
+    /**
+     * USER_AGENT字段长度，oracle的varchar2按字节计算长度
+     */
+    private static final int USER_AGENT_BYTES = 1000;
+    /**
+     * REMARK字段长度
+     */
+    private static final int REMARK_BYTES = 100;
+    private static final String ELLIPSIS = "...";
+
+    private final SysAccessLogService sysAccessLogService;
+    private final UserAgentCache userAgentCache;
+    private final ParamSerializer paramSerializer;
+    private final BonfireConfig.BonfireAccessLog config;
+    private final BlockingQueue<AccessLogRecord> queue;
+    private final Counter droppedCounter;
+    private final Counter writtenCounter;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public AccessLogWriter(SysAccessLogService sysAccessLogService, UserAgentCache userAgentCache,
+                           ParamSerializer paramSerializer, BonfireConfig bonfireConfig, MeterRegistry meterRegistry) {
+        this.sysAccessLogService = sysAccessLogService;
+        this.userAgentCache = userAgentCache;
+        this.paramSerializer = paramSerializer;
+        this.config = bonfireConfig.getAccessLog();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        // 队列积压和丢弃数量，见/actuator/metrics
+        Gauge.builder("bonfire.accessLog.queue.size", queue, BlockingQueue::size)
+                .description("待写库的访问日志数量")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("bonfire.accessLog.dropped")
+                .description("因队列满被丢弃的访问日志数量")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("bonfire.accessLog.written")
+                .description("已写库的访问日志数量")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::run, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * 停止时先让后台线程写完队列，超时未完成的由当前线程补写
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join(config.getFlushIntervalMillis() * 5);
+        List<AccessLogRecord> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (rest.size() > 0) {
+            flush(rest);
+        }
+    }
+
+    /**
+     * 提交访问日志，在请求线程上调用
+     *
+     * @param record 原始日志数据
+     */
+    public void submit(AccessLogRecord record) {
+        boolean accepted;
+        switch (config.getOverflowPolicy()) {
+            case BLOCK:
+                try {
+                    accepted = queue.offer(record, config.getBlockTimeoutMillis(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    accepted = false;
+                }
+                break;
+            case SAMPLE:
+                // 积压超过一半容量之后按比例保留
+                boolean backlog = queue.remainingCapacity() < config.getQueueCapacity() / 2;
+                accepted = (!backlog || ThreadLocalRandom.current().nextDouble() < config.getSampleRate())
+                        && queue.offer(record);
+                break;
+            case DROP:
+            default:
+                accepted = queue.offer(record);
+                break;
+        }
+        if (!accepted) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void run() {
+        int batchSize = config.getBatchSize();
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMillis());
+        List<AccessLogRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AccessLogRecord first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 攒批，数量达到batchSize或者等待超过flushInterval就写库
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    AccessLogRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                log.warn("访问日志写库线程被中断");
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("访问日志写库失败", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<AccessLogRecord> records) {
+        List<SysAccessLogEntity> entities = new ArrayList<>(records.size());
+        for (AccessLogRecord record : records) {
+            entities.add(toEntity(record));
+        }
+        try {
+            // saveBatch使用BATCH执行器，即jdbc批量insert
+            sysAccessLogService.saveBatch(entities, config.getBatchSize());
+            writtenCounter.increment(entities.size());
+        } catch (Exception e) {
+            // 整批在一个事务里已经回滚，逐条重写，个别异常数据不影响同批的其他日志
+            log.warn("访问日志批量写库失败，改为逐条写入", e);
+            for (SysAccessLogEntity entity : entities) {
+                try {
+                    sysAccessLogService.save(entity);
+                    writtenCounter.increment();
+                } catch (Exception ex) {
+                    log.error("访问日志写库失败，method：{}", entity.getMethod(), ex);
+                }
+            }
+        }
+    }
+
+    private SysAccessLogEntity toEntity(AccessLogRecord record) {
+        SysAccessLogEntity accessLogEntity = new SysAccessLogEntity();
+        accessLogEntity.setMethod(record.getMethod());
+        accessLogEntity.setParam(paramSerializer.serialize(record.getArgs()));
+        accessLogEntity.setDescription(record.getDescription());
+        accessLogEntity.setClientIp(record.getClientIp());
+        // ua和解析出的浏览器和系统
+        UserAgentCache.Client client = userAgentCache.get(record.getUserAgent());
+        accessLogEntity.setBrowser(client.getBrowser());
+        accessLogEntity.setOs(client.getOs());
+        // 超长的ua截断，否则整批insert都会失败
+        accessLogEntity.setUserAgent(truncate(record.getUserAgent(), USER_AGENT_BYTES));
+        accessLogEntity.setCreateTime(record.getCreateTime());
+        accessLogEntity.setElapsedTime(record.getElapsedTime());
+        accessLogEntity.setCreateUser(record.getUserId());
+        accessLogEntity.setUsername(record.getUsername());
+        // 请求失败时备注异常信息，异常信息多是中文，按字节截断
+        if (record.getError() != null) {
+            accessLogEntity.setRemark(truncate(StrUtil.format("{}: {}",
+                    record.getError().getClass().getSimpleName(), record.getError().getMessage()), REMARK_BYTES));
+        }
+        return accessLogEntity;
+    }
+
+    /**
+     * 按utf-8编码后的字节数截断，超长时以...结尾，不会截断在一个字符中间
+     *
+     * @param value    原始字符串
+     * @param maxBytes 最大字节数
+     * @return 截断后的字符串
+     */
+    static String truncate(String value, int maxBytes) {
+        if (value == null || value.getBytes(StandardCharsets.UTF_8).length <= maxBytes) {
+            return value;
+        }
+        int limit = maxBytes - ELLIPSIS.length();
+        int bytes = 0;
+        int end = 0;
+        while (end < value.length()) {
+            int codePoint = value.codePointAt(end);
+            int length = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (bytes + length > limit) {
+                break;
+            }
+            bytes += length;
+            end += Character.charCount(codePoint);
+        }
+        return value.substring(0, end) + ELLIPSIS;
+    }
+}
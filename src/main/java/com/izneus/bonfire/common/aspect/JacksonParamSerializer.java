@@ -0,0 +1,184 @@
+package com.izneus.bonfire.common.aspect;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.NopAnnotationIntrospector;
+import com.izneus.bonfire.common.annotation.Sensitive;
+import com.izneus.bonfire.config.BonfireConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * 基于spring管理的ObjectMapper的参数序列化，边序列化边截断，超过param字段长度后直接中止，
+ * 文件、流、servlet和WebRequest对象等不序列化，标注了{@link Sensitive}的字段输出为*
+ *
+ * @author Izneus
+ * @date 2021/03/26
+ */
+@Slf4j
+@Component
+public class JacksonParamSerializer implements ParamSerializer {
+
+    /**
+     * 不序列化的类型，MultipartFile属于InputStreamSource
+     */
+    private static final Class<?>[] IGNORED_TYPES = {InputStreamSource.class, InputStream.class,
+            OutputStream.class, Reader.class, Writer.class, ServletRequest.class, ServletResponse.class,
+            HttpSession.class, WebRequest.class};
+
+    private static final String TRUNCATED = "...";
+
+    private final ObjectMapper objectMapper;
+    private final int maxLength;
+
+    public JacksonParamSerializer(ObjectMapper objectMapper, BonfireConfig bonfireConfig) {
+        // 复制一份再改配置，不影响接口的json读写
+        this.objectMapper = objectMapper.copy()
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.objectMapper.setAnnotationIntrospector(AnnotationIntrospector.pair(
+                new SensitiveIntrospector(), this.objectMapper.getSerializationConfig().getAnnotationIntrospector()));
+        // 参数对象里的文件、流等属性同样忽略
+        for (Class<?> type : IGNORED_TYPES) {
+            this.objectMapper.addMixIn(type, IgnoredType.class);
+        }
+        this.maxLength = bonfireConfig.getAccessLog().getParamMaxLength();
+    }
+
+    @Override
+    public Object[] snapshot(Object[] args) {
+        if (args == null || args.length == 0) {
+            return args;
+        }
+        Object[] copy = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            // 参数对象里的同类属性由mixin忽略，序列化时不会访问
+            copy[i] = isIgnored(args[i]) ? null : args[i];
+        }
+        return copy;
+    }
+
+    @Override
+    public String serialize(Object[] args) {
+        if (args == null || args.length == 0) {
+            return null;
+        }
+        LimitedWriter writer = new LimitedWriter(maxLength - TRUNCATED.length());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            generator.writeStartArray();
+            for (Object arg : args) {
+                // 顶层参数是忽略类型时写null，保持参数位置
+                if (isIgnored(arg)) {
+                    generator.writeNull();
+                } else {
+                    objectMapper.writeValue(generator, arg);
+                }
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            if (writer.isTruncated()) {
+                return writer.toString() + TRUNCATED;
+            }
+            log.warn("访问日志参数序列化失败", e);
+            return null;
+        } catch (Exception e) {
+            log.warn("访问日志参数序列化失败", e);
+            return null;
+        }
+        return writer.toString();
+    }
+
+    private static boolean isIgnored(Object arg) {
+        if (arg == null) {
+            return false;
+        }
+        for (Class<?> type : IGNORED_TYPES) {
+            if (type.isInstance(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @JsonIgnoreType
+    private static class IgnoredType {
+    }
+
+    /**
+     * 标注了Sensitive的属性使用脱敏序列化器
+     */
+    private static class SensitiveIntrospector extends NopAnnotationIntrospector {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object findSerializer(Annotated am) {
+            return am.hasAnnotation(Sensitive.class) ? MaskSerializer.class : null;
+        }
+    }
+
+    private static class MaskSerializer extends JsonSerializer<Object> {
+        @Override
+        public void serialize(Object value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeString("*");
+        }
+    }
+
+    /**
+     * 写满maxLength个字符后抛出异常中止序列化，避免大对象完整序列化后再截断
+     */
+    private static class LimitedWriter extends Writer {
+        private final StringBuilder buffer;
+        private final int maxLength;
+        private boolean truncated;
+
+        LimitedWriter(int maxLength) {
+            this.buffer = new StringBuilder(Math.min(maxLength, 256));
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int remaining = maxLength - buffer.length();
+            if (len > remaining) {
+                buffer.append(cbuf, off, remaining);
+                truncated = true;
+                throw new IOException("access log param exceeds " + maxLength + " chars");
+            }
+            buffer.append(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+}
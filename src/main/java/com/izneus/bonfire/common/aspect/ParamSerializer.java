@@ -0,0 +1,27 @@
+package com.izneus.bonfire.common.aspect;
+
+/**
+ * 访问日志请求参数的序列化，实现类需要线程安全
+ *
+ * @author Izneus
+ * @date 2021/03/26
+ */
+public interface ParamSerializer {
+
+    /**
+     * 在请求线程上复制一份参数，请求结束后会被容器回收的参数，比如上传文件、servlet对象等置为null，
+     * 复制后的参数交给后台线程序列化
+     *
+     * @param args 方法参数
+     * @return 可以在请求结束后序列化的参数
+     */
+    Object[] snapshot(Object[] args);
+
+    /**
+     * 把切点方法的参数序列化为字符串，失败时返回null而不是抛错，不能影响日志写库
+     *
+     * @param args 方法参数
+     * @return 序列化后的字符串，长度不超过param字段的限制
+     */
+    String serialize(Object[] args);
+}
@@ -0,0 +1,73 @@
+package com.izneus.bonfire.common.aspect;
+
+import cn.hutool.http.useragent.UserAgent;
+import cn.hutool.http.useragent.UserAgentUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.izneus.bonfire.config.BonfireConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * User-Agent解析结果的本地缓存，UserAgentUtil.parse每次都要跑一遍正则，
+ * 而实际的客户端只有几十种User-Agent。
+ * 缓存按条数限制大小，caffeine的淘汰策略会拒绝只出现一次的新key挤掉常用key，
+ * 过长的User-Agent直接跳过，伪造的随机请求头不会把缓存撑大或冲掉
+ *
+ * @author Izneus
+ * @date 2021/03/25
+ */
+@Component
+public class UserAgentCache {
+
+    private static final Client UNKNOWN = new Client(null, null);
+
+    private final int maxLength;
+    private final Cache<String, Client> cache;
+
+    public UserAgentCache(BonfireConfig bonfireConfig, MeterRegistry meterRegistry) {
+        BonfireConfig.BonfireAccessLog config = bonfireConfig.getAccessLog();
+        this.maxLength = config.getUserAgentMaxLength();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getUserAgentCacheSize())
+                .recordStats()
+                .build();
+        // 缓存条数、命中率等指标，见/actuator/metrics/cache.size、cache.gets
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userAgentCache");
+    }
+
+    /**
+     * 解析User-Agent，优先读缓存
+     *
+     * @param userAgent 原始User-Agent请求头
+     * @return 浏览器和系统，无法解析时属性为null
+     */
+    public Client get(String userAgent) {
+        if (!StringUtils.hasText(userAgent) || userAgent.length() > maxLength) {
+            return UNKNOWN;
+        }
+        return cache.get(userAgent, UserAgentCache::parse);
+    }
+
+    private static Client parse(String userAgent) {
+        UserAgent ua = UserAgentUtil.parse(userAgent);
+        if (ua == null) {
+            return UNKNOWN;
+        }
+        return new Client(ua.getBrowser().toString(), ua.getOs().toString());
+    }
+
+    /**
+     * User-Agent解析出的浏览器和系统
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Client {
+        private final String browser;
+        private final String os;
+    }
+}
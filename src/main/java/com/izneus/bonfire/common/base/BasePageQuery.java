@@ -24,4 +24,8 @@ public class BasePageQuery {
     @ApiModelProperty(value = "一页的数据条数", required = true)
     @Range(min = 1, max = 500, message = "一页数据条数为1～500条")
     private Long pageSize;
+
+    @ApiModelProperty("游标，支持的接口传入时按游标分页，忽略页码且不返回总数，"
+            + "第一页传空字符串，之后传上一页返回的nextCursor")
+    private String cursor;
 }
@@ -9,7 +9,8 @@ import lombok.Data;
 import java.util.List;
 
 /**
- * 这是分页返回的基类，比请求的基类多了一个totalSize属性以及分页参数的构造函数
+ * 这是分页返回的基类，比请求的基类多了一个totalSize属性以及分页参数的构造函数，
+ * 游标分页时不返回totalSize和pageNum，返回nextCursor
  *
  * @author Izneus
  * @date 2020/07/29
@@ -31,18 +32,22 @@ public class BasePageVO<T> {
     @ApiModelProperty("分页数据行")
     private List<T> rows;
 
+    @ApiModelProperty("下一页的游标，游标分页时返回，为空时没有下一页")
+    private String nextCursor;
+
     public BasePageVO(Page page, List<T> rows) {
-        this.totalSize = page.getTotal();
-        this.pageNum = page.getCurrent();
+        if (page instanceof CursorPage) {
+            this.nextCursor = ((CursorPage) page).getNextCursor();
+        } else {
+            this.totalSize = page.getTotal();
+            this.pageNum = page.getCurrent();
+        }
         this.pageSize = page.getSize();
         this.rows = rows;
     }
 
     public BasePageVO(Page<T> page) {
-        this.totalSize = page.getTotal();
-        this.pageNum = page.getCurrent();
-        this.pageSize = page.getSize();
-        this.rows = page.getRecords();
+        this(page, page.getRecords());
     }
 
 }
@@ -0,0 +1,95 @@
+package com.izneus.bonfire.common.base;
+
+import cn.hutool.core.codec.Base64;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.izneus.bonfire.common.constant.ErrorCode;
+import com.izneus.bonfire.common.exception.BadRequestException;
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 游标分页，按(create_time, id)倒序定位下一页，不用offset也不统计总数，适合日志这类大表翻页，
+ * 条件写成create_time < ? or (create_time = ? and id < ?)，mysql和oracle都能用，
+ * create_time为null的行和任何值比较都不成立，无法定位，游标分页时排除这些行，
+ * 分页语句仍由PaginationInterceptor按方言生成，
+ * 大表需要(create_time, id)上的索引，见db目录下的建表脚本
+ *
+ * @author Izneus
+ * @date 2021/04/06
+ */
+public class CursorPage<T> extends Page<T> {
+
+    private static final String SEPARATOR = ",";
+
+    /**
+     * 下一页的游标，没有下一页时为null
+     */
+    @Getter
+    private String nextCursor;
+
+    private CursorPage(long size) {
+        // 只取第一页，不查count
+        super(1, size, false);
+    }
+
+    /**
+     * 是否请求了游标分页，传了cursor参数即为游标分页，第一页传空字符串
+     *
+     * @param query 分页参数
+     * @return boolean
+     */
+    public static boolean isRequested(BasePageQuery query) {
+        return query.getCursor() != null;
+    }
+
+    /**
+     * 按游标查询一页，排序固定为创建时间和id倒序，wrapper里不要再加排序
+     *
+     * @param service    查询的service
+     * @param query      分页参数
+     * @param wrapper    查询条件
+     * @param createTime 创建时间字段
+     * @param id         id字段
+     * @param <T>        实体类
+     * @return 当前页，带下一页游标
+     */
+    public static <T> CursorPage<T> seek(IService<T> service, BasePageQuery query, LambdaQueryWrapper<T> wrapper,
+                                         SFunction<T, Date> createTime, SFunction<T, String> id) {
+        wrapper.isNotNull(createTime);
+        if (!query.getCursor().isEmpty()) {
+            Object[] key = decode(query.getCursor());
+            wrapper.and(w -> w
+                    .lt(createTime, key[0])
+                    .or(o -> o.eq(createTime, key[0]).lt(id, key[1])));
+        }
+        wrapper.orderByDesc(createTime).orderByDesc(id);
+        CursorPage<T> page = new CursorPage<>(query.getPageSize());
+        service.page(page, wrapper);
+        // 取满一页就认为可能还有下一页，最后一页恰好取满时下一页为空
+        List<T> rows = page.getRecords();
+        if (!rows.isEmpty() && rows.size() >= page.getSize()) {
+            T last = rows.get(rows.size() - 1);
+            page.nextCursor = encode(createTime.apply(last), id.apply(last));
+        }
+        return page;
+    }
+
+    static String encode(Date createTime, String id) {
+        return Base64.encodeUrlSafe(createTime.getTime() + SEPARATOR + id);
+    }
+
+    static Object[] decode(String cursor) {
+        try {
+            String key = Base64.decodeStr(cursor);
+            int index = key.indexOf(SEPARATOR);
+            return new Object[]{new Date(Long.parseLong(key.substring(0, index))), key.substring(index + 1)};
+        } catch (Exception e) {
+            throw new BadRequestException(ErrorCode.INVALID_ARGUMENT, "分页游标无效");
+        }
+    }
+}
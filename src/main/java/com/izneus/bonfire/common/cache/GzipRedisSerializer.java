@@ -0,0 +1,47 @@
+package com.izneus.bonfire.common.cache;
+
+import cn.hutool.core.util.ZipUtil;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 超过阈值的值gzip压缩后写入，读出时按gzip头判断是否需要解压，
+ * json不会以0x1f开头，压缩前后的值可以混存，调整阈值不影响已有缓存
+ *
+ * @author Izneus
+ * @date 2021/04/04
+ */
+public class GzipRedisSerializer<T> implements RedisSerializer<T> {
+
+    private static final byte GZIP_MAGIC_0 = (byte) 0x1f;
+    private static final byte GZIP_MAGIC_1 = (byte) 0x8b;
+
+    private final RedisSerializer<T> delegate;
+    private final int threshold;
+
+    /**
+     * @param delegate  实际的序列化器
+     * @param threshold 压缩阈值，单位字节，小于等于0时不压缩
+     */
+    public GzipRedisSerializer(RedisSerializer<T> delegate, int threshold) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes == null || threshold <= 0 || bytes.length <= threshold) {
+            return bytes;
+        }
+        return ZipUtil.gzip(bytes);
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes != null && bytes.length > 2 && bytes[0] == GZIP_MAGIC_0 && bytes[1] == GZIP_MAGIC_1) {
+            return delegate.deserialize(ZipUtil.unGzip(bytes));
+        }
+        return delegate.deserialize(bytes);
+    }
+}
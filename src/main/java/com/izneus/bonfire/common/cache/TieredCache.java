@@ -0,0 +1,170 @@
+package com.izneus.bonfire.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 两级缓存，本地caffeine在前，redis在后，本地未命中时读redis并回填本地，
+ * 写入和失效先改redis再改本地，同时通知其他节点失效本地缓存
+ *
+ * @author Izneus
+ * @date 2021/04/03
+ */
+@Slf4j
+public class TieredCache implements org.springframework.cache.Cache {
+
+    private final String name;
+    private final Cache<Object, Object> local;
+    private final org.springframework.cache.Cache remote;
+    private final TieredCacheManager cacheManager;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    TieredCache(String name, Cache<Object, Object> local, org.springframework.cache.Cache remote,
+                TieredCacheManager cacheManager, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.cacheManager = cacheManager;
+        // 一级缓存的指标见/actuator/metrics/cache.gets，这里只统计穿透到redis的部分
+        this.remoteHits = Counter.builder("bonfire.cache.remote.gets")
+                .tag("cache", name)
+                .tag("result", "hit")
+                .description("本地未命中后读redis二级缓存的次数")
+                .register(meterRegistry);
+        this.remoteMisses = Counter.builder("bonfire.cache.remote.gets")
+                .tag("cache", name)
+                .tag("result", "miss")
+                .description("本地未命中后读redis二级缓存的次数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            return new SimpleValueWrapper(value);
+        }
+        ValueWrapper wrapper = getRemote(key);
+        if (wrapper != null && wrapper.get() != null) {
+            local.put(key, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // 同一节点上同一个key只加载一次，其他线程等待结果
+        return (T) local.get(key, k -> {
+            ValueWrapper wrapper = getRemote(k);
+            if (wrapper != null) {
+                return wrapper.get();
+            }
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(k, valueLoader, e);
+            }
+            // redis缓存配置了不缓存null，加载结果为null时两级都不写，caffeine的加载函数返回null即不缓存
+            if (value != null) {
+                remote.put(k, value);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        // 不缓存null，写入null等同于失效
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        remote.put(key, value);
+        local.put(key, value);
+        cacheManager.publishEvict(name, key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        local.invalidate(key);
+        cacheManager.publishEvict(name, key);
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(key);
+        cacheManager.publishEvict(name, key);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        cacheManager.publishEvict(name, null);
+    }
+
+    /**
+     * 其他节点通知失效时只清本地
+     *
+     * @param key 缓存key，为null时清空
+     */
+    void evictLocal(Object key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    private ValueWrapper getRemote(Object key) {
+        ValueWrapper wrapper;
+        try {
+            wrapper = remote.get(key);
+        } catch (SerializationException e) {
+            // 缓存的值类型或序列化方式变了，旧值读不出来，删掉当作未命中
+            log.warn("缓存{}的值无法反序列化，删除后重新加载，key = {}", name, key, e);
+            remote.evict(key);
+            wrapper = null;
+        }
+        if (wrapper == null) {
+            remoteMisses.increment();
+        } else {
+            remoteHits.increment();
+        }
+        return wrapper;
+    }
+}
@@ -0,0 +1,111 @@
+package com.izneus.bonfire.common.cache;
+
+import cn.hutool.core.util.IdUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_CHANNEL_CACHE;
+
+/**
+ * 两级缓存管理器，每个缓存是本地caffeine加redis，各缓存的大小和过期时间见bonfire.cache，
+ * 任一节点写入或失效时通过redis频道通知其他节点失效本地缓存，
+ * 命中率等统计按缓存名称区分，见/actuator/metrics/cache.gets和bonfire.cache.remote.gets
+ *
+ * @author Izneus
+ * @date 2021/04/03
+ */
+@Slf4j
+public class TieredCacheManager implements CacheManager, MessageListener {
+
+    private final RedisCacheManager remoteCacheManager;
+    private final BonfireConfig.BonfireCache config;
+    private final RedisUtil redisUtil;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, TieredCache> caches = new ConcurrentHashMap<>();
+    /**
+     * 区分本节点发出的消息
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    public TieredCacheManager(RedisCacheManager remoteCacheManager, BonfireConfig.BonfireCache config,
+                              RedisUtil redisUtil, RedisMessageListenerContainer listenerContainer,
+                              MeterRegistry meterRegistry) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.config = config;
+        this.redisUtil = redisUtil;
+        this.meterRegistry = meterRegistry;
+        listenerContainer.addMessageListener(this, new ChannelTopic(REDIS_CHANNEL_CACHE));
+    }
+
+    @Override
+    public org.springframework.cache.Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 通知其他节点失效本地缓存
+     *
+     * @param name 缓存名称
+     * @param key  缓存key，为null时清空
+     */
+    void publishEvict(String name, Object key) {
+        // 消息按RedisTemplate的json序列化，带类型信息，用ArrayList才能反序列化
+        redisUtil.publish(REDIS_CHANNEL_CACHE, new ArrayList<>(Arrays.asList(nodeId, name, key)));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        List<?> body;
+        try {
+            body = (List<?>) redisUtil.deserialize(message.getBody());
+        } catch (Exception e) {
+            // key反序列化失败时不知道失效哪个，清空所有本地缓存
+            log.warn("两级缓存失效消息解析失败，清空全部本地缓存", e);
+            caches.values().forEach(cache -> cache.evictLocal(null));
+            return;
+        }
+        if (body == null || body.size() != 3 || nodeId.equals(body.get(0))) {
+            return;
+        }
+        TieredCache cache = caches.get(String.valueOf(body.get(1)));
+        if (cache != null) {
+            cache.evictLocal(body.get(2));
+        }
+    }
+
+    private TieredCache createCache(String name) {
+        BonfireConfig.CacheSpec spec = config.getSpec(name);
+        Cache<Object, Object> local = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.getLocalExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name);
+        return new TieredCache(name, local, remoteCacheManager.getCache(name), this, meterRegistry);
+    }
+}
@@ -19,15 +19,85 @@ public class Constant {
     public static final String REDIS_KEY_LOGIN_RETRY = "username:{}:retry";
 
     /**
-     * 用户权限的redis key，{}为userId，实际存储的key形如 user:userId:auths
+     * 用户权限的redis key，{}为userId，实际存储的key形如 user:userId:auths，值为纯字符串，不经过json序列化
      */
     public static final String REDIS_KEY_AUTHS = "user:{}:auths";
 
     /**
-     * 黑名单的redis key，黑名单用来实现登出、服务端锁定账号等，{}为jwt
+     * 用户权限变更的redis频道，消息内容为userId，各节点收到后清除本地的权限缓存
+     */
+    public static final String REDIS_CHANNEL_AUTHS = "channel:auths";
+
+    /**
+     * 角色权限索引变更的redis频道，消息内容形如 nodeId|ROLE|roleId，各节点收到后从数据库重新加载该角色或权限
+     */
+    public static final String REDIS_CHANNEL_ROLE_AUTHS = "channel:roleAuths";
+
+    /**
+     * token续期锁的redis key，{}为jti，值为续期后的新token，同一token并发续期时都拿到这个新token
+     */
+    public static final String REDIS_KEY_RENEW = "token:{}:renew";
+
+    /**
+     * 黑名单的redis key，黑名单用来实现登出、服务端锁定账号等，{}为jti，续期后的token沿用jti，一并失效
      */
     public static final String REDIS_KEY_BLACKLIST = "blacklist:{}";
 
+    /**
+     * 黑名单索引的redis key，有序集合，成员为jti，分数为过期时间戳，用来重建各节点的布隆过滤器
+     */
+    public static final String REDIS_KEY_BLACKLIST_INDEX = "blacklist:index";
+
+    /**
+     * token吊销的redis频道，消息内容为jti，各节点收到后加入本地布隆过滤器
+     */
+    public static final String REDIS_CHANNEL_BLACKLIST = "channel:blacklist";
+
+    /**
+     * 用户登录会话的redis key，有序集合，成员为jti，分数为会话过期时间戳，鉴权时和权限一起读出
+     */
+    public static final String REDIS_KEY_SESSIONS = "user:{}:sessions";
+
+    /**
+     * 用户登录会话信息的redis key，哈希，字段为jti，值为登录时间、ip、浏览器等json
+     */
+    public static final String REDIS_KEY_SESSION_INFO = "user:{}:sessions:info";
+
+    /**
+     * 限流令牌桶的redis key，{}为限流对象，比如ip:{ip}:{uri}或者username:{username}
+     */
+    public static final String REDIS_KEY_RATE_LIMIT = "rate:{}";
+
+    /**
+     * 两级缓存失效的redis频道，消息内容为节点id、缓存名称和key，各节点收到后失效本地一级缓存
+     */
+    public static final String REDIS_CHANNEL_CACHE = "channel:cache";
+
+    /**
+     * 字典版本号的redis key，字典每次增删改加1，用作字典接口的ETag
+     */
+    public static final String REDIS_KEY_DICT_VERSION = "dict:version";
+
+    /**
+     * 字典变更的redis频道，消息内容为新的版本号，各节点收到后重建字典索引
+     */
+    public static final String REDIS_CHANNEL_DICT = "channel:dict";
+
+    /**
+     * 异步导出任务的状态，任意节点都能查询进度，过期时间和临时文件保留时长一致
+     */
+    public static final String REDIS_KEY_EXPORT_TASK = "export:{}";
+
+    /**
+     * 分片上传的文件信息，每上传一个分片续期，过期后未完成的上传由定时任务清理
+     */
+    public static final String REDIS_KEY_UPLOAD = "upload:{}";
+
+    /**
+     * 分片上传已收到的分片位图，第n位为1表示第n个分片已写入并校验通过
+     */
+    public static final String REDIS_KEY_UPLOAD_CHUNKS = "upload:{}:chunks";
+
     /**
      * 最大密码错误重试次数
      */
@@ -45,6 +115,16 @@ public class Constant {
      */
     public static final String UPLOAD_FILE = "1";
 
+    /**
+     * 导出的文件，在uploadPath下的export目录，uploadPath为各节点共享的存储，任意节点都能下载
+     */
+    public static final String EXPORT_FILE = "2";
+
+    /**
+     * 导出文件所在的目录，uploadPath的子目录
+     */
+    public static final String EXPORT_DIR = "export";
+
     public static final String READ = "0";
     public static final String UNREAD = "1";
 
@@ -3,6 +3,10 @@ package com.izneus.bonfire.common.constant;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 字典类常量，都为枚举类型，数据库字典表中的字典，如果出现在业务逻辑判断里，补充在该类中
  *
@@ -11,12 +15,54 @@ import lombok.RequiredArgsConstructor;
  */
 public class Dict {
 
+    /**
+     * 带字典值的枚举，字典值就是数据库里存的值
+     */
+    public interface ValueEnum {
+        /**
+         * 字典值
+         *
+         * @return 字典值
+         */
+        String getValue();
+    }
+
+    /**
+     * 各枚举字典值到枚举项的映射，每个枚举类只构建一次，之后只读
+     */
+    private static final ClassValue<Map<String, ?>> REGISTRY = new ClassValue<Map<String, ?>>() {
+        @Override
+        protected Map<String, ?> computeValue(Class<?> type) {
+            if (!type.isEnum() || !ValueEnum.class.isAssignableFrom(type)) {
+                throw new IllegalArgumentException(type.getName() + "不是Dict.ValueEnum枚举");
+            }
+            Object[] constants = type.getEnumConstants();
+            Map<String, Object> map = new HashMap<>(constants.length * 2);
+            for (Object constant : constants) {
+                map.put(((ValueEnum) constant).getValue(), constant);
+            }
+            return Collections.unmodifiableMap(map);
+        }
+    };
+
+    /**
+     * 获得枚举的字典值映射
+     *
+     * @param enumClass 枚举类，需实现ValueEnum
+     * @param <E>       枚举类
+     * @return 字典值到枚举项，不可修改
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> Map<String, E> valueMap(Class<E> enumClass) {
+        return (Map<String, E>) REGISTRY.get(enumClass);
+    }
+
     /**
      * 用户状态
      */
     @RequiredArgsConstructor
     @Getter
-    public enum UserStatus {
+    public enum UserStatus implements ValueEnum {
         /**
          * 正常
          */
@@ -27,8 +73,25 @@ public class Dict {
          */
         LOCK("1", "已锁定");
 
+        private static final Map<String, UserStatus> VALUES = valueMap(UserStatus.class);
+
         private final String code;
         private final String name;
+
+        @Override
+        public String getValue() {
+            return code;
+        }
+
+        /**
+         * 通过字典值获得枚举项
+         *
+         * @param value 字典值
+         * @return 枚举项，字典值不存在时为null
+         */
+        public static UserStatus of(String value) {
+            return value == null ? null : VALUES.get(value);
+        }
     }
 
     /**
@@ -36,7 +99,7 @@ public class Dict {
      */
     @RequiredArgsConstructor
     @Getter
-    public enum DictStatus {
+    public enum DictStatus implements ValueEnum {
         /**
          * 正常
          */
@@ -47,8 +110,25 @@ public class Dict {
          */
         DISABLE("1", "已禁用");
 
+        private static final Map<String, DictStatus> VALUES = valueMap(DictStatus.class);
+
         private final String code;
         private final String name;
+
+        @Override
+        public String getValue() {
+            return code;
+        }
+
+        /**
+         * 通过字典值获得枚举项
+         *
+         * @param value 字典值
+         * @return 枚举项，字典值不存在时为null
+         */
+        public static DictStatus of(String value) {
+            return value == null ? null : VALUES.get(value);
+        }
     }
 
     /**
@@ -56,7 +136,7 @@ public class Dict {
      */
     @RequiredArgsConstructor
     @Getter
-    public enum JobStatus {
+    public enum JobStatus implements ValueEnum {
         /**
          * 正常
          */
@@ -67,7 +147,19 @@ public class Dict {
          */
         PAUSE("1");
 
+        private static final Map<String, JobStatus> VALUES = valueMap(JobStatus.class);
+
         private final String value;
+
+        /**
+         * 通过字典值获得枚举项
+         *
+         * @param value 字典值
+         * @return 枚举项，字典值不存在时为null
+         */
+        public static JobStatus of(String value) {
+            return value == null ? null : VALUES.get(value);
+        }
     }
 
     /**
@@ -75,7 +167,7 @@ public class Dict {
      */
     @RequiredArgsConstructor
     @Getter
-    public enum NoticeType {
+    public enum NoticeType implements ValueEnum {
         /**
          * 全局公告
          */
@@ -86,7 +178,19 @@ public class Dict {
          */
         PM("1");
 
+        private static final Map<String, NoticeType> VALUES = valueMap(NoticeType.class);
+
         private final String value;
+
+        /**
+         * 通过字典值获得枚举项
+         *
+         * @param value 字典值
+         * @return 枚举项，字典值不存在时为null
+         */
+        public static NoticeType of(String value) {
+            return value == null ? null : VALUES.get(value);
+        }
     }
 
     /**
@@ -94,7 +198,7 @@ public class Dict {
      */
     @RequiredArgsConstructor
     @Getter
-    public enum UserNoticeStatus {
+    public enum UserNoticeStatus implements ValueEnum {
         /**
          * 未读
          */
@@ -110,7 +214,19 @@ public class Dict {
          */
         DELETE("2");
 
+        private static final Map<String, UserNoticeStatus> VALUES = valueMap(UserNoticeStatus.class);
+
         private final String value;
+
+        /**
+         * 通过字典值获得枚举项
+         *
+         * @param value 字典值
+         * @return 枚举项，字典值不存在时为null
+         */
+        public static UserNoticeStatus of(String value) {
+            return value == null ? null : VALUES.get(value);
+        }
     }
 
     /**
@@ -118,7 +234,7 @@ public class Dict {
      */
     @RequiredArgsConstructor
     @Getter
-    public enum TicketStatus {
+    public enum TicketStatus implements ValueEnum {
         /**
          * 待处理
          */
@@ -144,7 +260,19 @@ public class Dict {
          */
         EVALUATED("4");
 
+        private static final Map<String, TicketStatus> VALUES = valueMap(TicketStatus.class);
+
         private final String value;
+
+        /**
+         * 通过字典值获得枚举项
+         *
+         * @param value 字典值
+         * @return 枚举项，字典值不存在时为null
+         */
+        public static TicketStatus of(String value) {
+            return value == null ? null : VALUES.get(value);
+        }
     }
 
 
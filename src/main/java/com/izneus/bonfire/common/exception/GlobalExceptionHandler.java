@@ -2,6 +2,7 @@ package com.izneus.bonfire.common.exception;
 
 import com.izneus.bonfire.common.constant.ErrorCode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -39,6 +40,17 @@ public class GlobalExceptionHandler {
         );
     }
 
+    /**
+     * 限流，带上Retry-After响应头
+     */
+    @ExceptionHandler(RateLimitException.class)
+    public ResponseEntity<ApiError> handleRateLimitException(RateLimitException e) {
+        log.warn("RateLimitException: {}", e.getErrorMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ApiError(e.getErrorCode(), e.getErrorMessage(), e.toString()));
+    }
+
     /**
      * 主要是处理loadUserByUsername里抛出的UsernameNotFoundException，
      * 因为hideUserNotFoundExceptions=true会转为BadCredentialsException
@@ -0,0 +1,24 @@
+package com.izneus.bonfire.common.exception;
+
+import com.izneus.bonfire.common.constant.ErrorCode;
+import lombok.Getter;
+
+/**
+ * 请求过于频繁被限流，返回429和Retry-After响应头
+ *
+ * @author Izneus
+ * @date 2021/04/02
+ */
+@Getter
+public class RateLimitException extends BadRequestException {
+
+    /**
+     * 建议的重试等待时长，单位秒
+     */
+    private final long retryAfterSeconds;
+
+    public RateLimitException(String errorMessage, long retryAfterSeconds) {
+        super(ErrorCode.RESOURCE_EXHAUSTED, errorMessage);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
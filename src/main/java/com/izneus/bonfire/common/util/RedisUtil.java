@@ -1,10 +1,28 @@
 package com.izneus.bonfire.common.util;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -14,8 +32,51 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 @Component
 public class RedisUtil {
+
+    /**
+     * 读出并删除，redis 6.2以下没有GETDEL
+     */
+    private static final RedisScript<Object> GET_AND_DELETE = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) " +
+                    "if v then redis.call('DEL', KEYS[1]) end " +
+                    "return v",
+            Object.class);
+
+    /**
+     * 读第一个key，同时读出并删除第二个key
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> GET_WITH_GET_AND_DELETE = new DefaultRedisScript<>(
+            "local v1 = redis.call('GET', KEYS[1]) " +
+                    "local v2 = redis.call('GET', KEYS[2]) " +
+                    "if v2 then redis.call('DEL', KEYS[2]) end " +
+                    "return {v1, v2}",
+            List.class);
+
+    /**
+     * 原子加1，首次加1时设置过期时间，达到阈值时改为另一个过期时间
+     */
+    private static final RedisScript<Long> INCR_WITH_EXPIRE = new DefaultRedisScript<>(
+            "local n = redis.call('INCR', KEYS[1]) " +
+                    "if n == 1 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end " +
+                    "if n >= tonumber(ARGV[2]) then redis.call('EXPIRE', KEYS[1], ARGV[3]) end " +
+                    "return n",
+            Long.class);
+
+    /**
+     * key存在时改写值并保留剩余过期时间，redis 6.0以下没有SET KEEPTTL
+     */
+    private static final byte[] SET_IF_EXISTS_KEEP_TTL = (
+            "local ttl = redis.call('PTTL', KEYS[1]) " +
+                    "if ttl > 0 then redis.call('SET', KEYS[1], ARGV[1], 'PX', ttl) return 1 end " +
+                    "if ttl == -1 then redis.call('SET', KEYS[1], ARGV[1]) return 1 end " +
+                    "return 0").getBytes(StandardCharsets.UTF_8);
+
     private final RedisTemplate<String, Object> redisTemplate;
-//    StringRedisTemplate
+    /**
+     * key和value都按字符串序列化，用于不需要json的简单值
+     */
+    private final StringRedisTemplate stringRedisTemplate;
     /**
      * 默认过期时长，单位：秒
      */
@@ -70,10 +131,110 @@ public class RedisUtil {
         return StringUtils.hasText(key) ? redisTemplate.opsForValue().get(key) : null;
     }
 
+    /**
+     * 按字符串写redis，不经过json序列化，用于权限、验证码等读写频繁的简单值
+     *
+     * @param key        键
+     * @param value      值
+     * @param expireTime 过期时间，单位秒
+     */
+    public void setString(String key, String value, long expireTime) {
+        stringRedisTemplate.opsForValue().set(key, value, expireTime, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 按字符串读redis，和setString、INCR等写入的值对应
+     *
+     * @param key 键
+     * @return 值
+     */
+    public String getString(String key) {
+        return StringUtils.hasText(key) ? stringRedisTemplate.opsForValue().get(key) : null;
+    }
+
+    /**
+     * 位图置位，位图按原始字节存储，不经过序列化
+     *
+     * @param key    键
+     * @param offset 位序号
+     */
+    public void setBit(String key, long offset) {
+        stringRedisTemplate.opsForValue().setBit(key, offset, true);
+    }
+
+    /**
+     * 位图中为1的位数
+     *
+     * @param key 键
+     * @return 位数，key不存在时为0
+     */
+    public long bitCount(String key) {
+        Long count = stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.bitCount(key.getBytes(StandardCharsets.UTF_8)));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 读取整个位图，第n位在第n/8个字节，字节内从高位开始
+     *
+     * @param key 键
+     * @return 位图字节，key不存在时为空数组
+     */
+    public byte[] getBits(String key) {
+        byte[] bits = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.get(key.getBytes(StandardCharsets.UTF_8)));
+        return bits == null ? new byte[0] : bits;
+    }
+
     public void del(String key) {
         redisTemplate.delete(key);
     }
 
+    /**
+     * key是否存在
+     *
+     * @param key 键
+     * @return 是否存在
+     */
+    public boolean hasKey(String key) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+    }
+
+    /**
+     * 删除有序集合中分数在[min, max]之间的成员，再返回剩余的全部成员，一般用于先清理过期成员再全量读取
+     *
+     * @param key 键
+     * @param min 最小分数
+     * @param max 最大分数
+     * @return 剩余成员
+     */
+    public Set<Object> zRemoveRangeByScoreAndGetAll(String key, double min, double max) {
+        List<Object> results = pipelined(ops -> {
+            ops.opsForZSet().removeRangeByScore(key, min, max);
+            ops.opsForZSet().range(key, 0, -1);
+        });
+        @SuppressWarnings("unchecked")
+        Set<Object> members = (Set<Object>) results.get(1);
+        return members == null ? Collections.emptySet() : members;
+    }
+
+    /**
+     * 通过pipeline执行一组命令，一次往返
+     *
+     * @param commands 要执行的命令，命令的返回值在pipeline中都是null
+     * @return 各命令的结果，按执行顺序
+     */
+    public List<Object> pipelined(Consumer<RedisOperations<String, Object>> commands) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                commands.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        });
+    }
+
     /**
      * 设置过期时间
      *
@@ -95,4 +256,124 @@ public class RedisUtil {
         return redisTemplate.opsForValue().increment(key);
     }
 
+    /**
+     * 原子的读出并删除，一次往返
+     *
+     * @param key 键
+     * @return 删除前的值，不存在时返回null
+     */
+    public Object getAndDelete(String key) {
+        return redisTemplate.execute(GET_AND_DELETE, Collections.singletonList(key));
+    }
+
+    /**
+     * 一次往返读出key的值，同时读出并删除deleteKey，两个值都按字符串读出，
+     * 一般用于登录时同时检查重试次数和取出验证码
+     *
+     * @param key       只读的键
+     * @param deleteKey 读出后删除的键
+     * @return 长度为2的列表，依次是两个键的值，不存在的为null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<String> getWithGetAndDelete(String key, String deleteKey) {
+        List<String> values = redisTemplate.execute(GET_WITH_GET_AND_DELETE, redisTemplate.getStringSerializer(),
+                (RedisSerializer<List>) (RedisSerializer<?>) redisTemplate.getStringSerializer(),
+                Arrays.asList(key, deleteKey));
+        // 固定返回两个元素，调用方按下标取值
+        String[] result = new String[2];
+        for (int i = 0; values != null && i < values.size() && i < 2; i++) {
+            result[i] = values.get(i);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * 原子加1并设置过期时间，避免先set再incr之间的竞争，
+     * 第一次加1时设置expireSeconds，计数达到threshold时过期时间改为thresholdExpireSeconds
+     *
+     * @param key                    键
+     * @param expireSeconds          计数窗口，单位秒
+     * @param threshold              阈值
+     * @param thresholdExpireSeconds 达到阈值后的过期时间，单位秒
+     * @return 加1后的值
+     */
+    public Long incr(String key, long expireSeconds, long threshold, long thresholdExpireSeconds) {
+        return redisTemplate.execute(INCR_WITH_EXPIRE, redisTemplate.getStringSerializer(),
+                new GenericToStringSerializer<>(Long.class), Collections.singletonList(key),
+                String.valueOf(expireSeconds), String.valueOf(threshold), String.valueOf(thresholdExpireSeconds));
+    }
+
+    /**
+     * 执行lua脚本，byte[]参数原样传入，其他参数按字符串传入，
+     * 需要和RedisTemplate写入的值比较或写入时，先用serialize序列化
+     *
+     * @param script           脚本
+     * @param resultSerializer 结果的反序列化器
+     * @param keys             键
+     * @param args             参数
+     * @param <T>              结果类型
+     * @return 脚本结果
+     */
+    public <T> T execute(RedisScript<T> script, RedisSerializer<T> resultSerializer, List<String> keys,
+                         Object... args) {
+        Object[] rawArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            rawArgs[i] = args[i] instanceof byte[] ? args[i]
+                    : String.valueOf(args[i]).getBytes(StandardCharsets.UTF_8);
+        }
+        return redisTemplate.execute(script, RedisSerializer.byteArray(), resultSerializer, keys, rawArgs);
+    }
+
+    /**
+     * 发布消息，订阅方使用RedisTemplate的value序列化器反序列化消息内容
+     *
+     * @param channel 频道
+     * @param message 消息
+     */
+    public void publish(String channel, Object message) {
+        redisTemplate.convertAndSend(channel, message);
+    }
+
+    /**
+     * 批量改写已存在的key，值按字符串写入，保留各自的剩余过期时间，不存在的key跳过，
+     * 所有key通过pipeline一次往返完成
+     *
+     * @param values 键和新值
+     */
+    public void setIfExistsKeepTtl(Map<String, String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        redisTemplate.executePipelined((RedisCallback<Object>) (RedisConnection connection) -> {
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                // 脚本很短，直接eval，不用处理pipeline中evalsha的NOSCRIPT
+                connection.eval(SET_IF_EXISTS_KEEP_TTL, ReturnType.INTEGER, 1,
+                        stringSerializer.serialize(entry.getKey()), stringSerializer.serialize(entry.getValue()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 反序列化订阅收到的消息体
+     *
+     * @param body 消息体
+     * @return 消息
+     */
+    public Object deserialize(byte[] body) {
+        return redisTemplate.getValueSerializer().deserialize(body);
+    }
+
+    /**
+     * 用RedisTemplate的value序列化器序列化，一般用于脚本参数和发布的消息
+     *
+     * @param value 值
+     * @return 序列化结果
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] serialize(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
 }
@@ -2,10 +2,17 @@ package com.izneus.bonfire.config;
 
 import cn.hutool.system.OsInfo;
 import cn.hutool.system.SystemUtil;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * bonfire工程使用的一些自定义参数，具体含义可以参考.yml内注释
  *
@@ -24,11 +31,266 @@ public class BonfireConfig {
         private String tempPath;
     }
 
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    public static class BonfireAuthCache {
+        /**
+         * 本地权限缓存的最大用户数
+         */
+        private Long maximumSize = 10000L;
+        /**
+         * 本地权限缓存的过期时长，单位秒
+         */
+        private Long expireSeconds = 60L;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    public static class BonfireAccessLog {
+        /**
+         * 待写库访问日志队列的容量
+         */
+        private Integer queueCapacity = 10000;
+        /**
+         * 一次批量写库的最大条数
+         */
+        private Integer batchSize = 200;
+        /**
+         * 攒批的最长等待时间，单位毫秒
+         */
+        private Long flushIntervalMillis = 1000L;
+        /**
+         * 队列满时的处理策略
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+        /**
+         * SAMPLE策略下，队列积压超过一半后保留日志的比例
+         */
+        private Double sampleRate = 0.1;
+        /**
+         * BLOCK策略下，请求线程等待队列空位的最长时间，单位毫秒，超时后丢弃
+         */
+        private Long blockTimeoutMillis = 100L;
+        /**
+         * User-Agent解析结果缓存的最大条数
+         */
+        private Long userAgentCacheSize = 1000L;
+        /**
+         * 超过该长度的User-Agent不解析也不缓存，一般是伪造的请求头
+         */
+        private Integer userAgentMaxLength = 512;
+        /**
+         * 请求参数序列化后的最大长度，超过的部分截断
+         */
+        private Integer paramMaxLength = 4000;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    public static class BonfirePassword {
+        /**
+         * bcrypt的强度，即2^strength轮，取值4～31，每加1耗时翻倍
+         */
+        private Integer strength = 10;
+        /**
+         * 同时进行密码哈希的最大线程数，默认cpu核数的一半，给其他接口留出cpu
+         */
+        private Integer maxConcurrent = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        /**
+         * 等待哈希的最大排队数，超过后直接拒绝登录，
+         * 排满时的等待时间约为queueCapacity / 每秒哈希数，应小于timeoutMillis
+         */
+        private Integer queueCapacity = 200;
+        /**
+         * 请求线程等待哈希结果的最长时间，单位毫秒
+         */
+        private Long timeoutMillis = 5000L;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    public static class BonfireCaptcha {
+        /**
+         * 预先生成的验证码数量，0表示不预生成，每次请求时生成
+         */
+        private Integer poolSize = 500;
+        /**
+         * 后台补充验证码的线程数
+         */
+        private Integer refillThreads = 1;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    public static class BonfireRateLimit {
+        /**
+         * 是否启用限流
+         */
+        private Boolean enabled = true;
+        /**
+         * 需要限流的接口，ant风格，按客户端ip和接口分别计数
+         */
+        private List<String> paths = Arrays.asList("/api/*/login", "/api/*/captcha");
+        /**
+         * 每个ip每个接口的令牌桶
+         */
+        private Bucket ip = new Bucket(20, 20);
+        /**
+         * 每个用户名登录的令牌桶，和密码错误锁定互补，限制的是请求频率
+         */
+        private Bucket username = new Bucket(10, 5);
+        /**
+         * 本地记录的被拒绝客户端的最大数量，等待期内的请求不访问redis直接拒绝
+         */
+        private Long localCacheSize = 10000L;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        /**
+         * 桶容量，即允许的突发请求数
+         */
+        private Integer capacity;
+        /**
+         * 每分钟补充的令牌数，即长期的平均速率
+         */
+        private Integer refillPerMinute;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    public static class BonfireCache {
+        /**
+         * 各缓存的默认配置
+         */
+        private CacheSpec defaults = new CacheSpec(1000L, 300L, 7200L);
+        /**
+         * 按缓存名称单独配置，未配置的项使用默认配置
+         */
+        private Map<String, CacheSpec> caches = new HashMap<>();
+        /**
+         * redis二级缓存的值超过该大小时gzip压缩，单位字节，0不压缩
+         */
+        private Integer compressThreshold = 2048;
+
+        /**
+         * 合并单独配置和默认配置
+         *
+         * @param cacheName 缓存名称
+         * @return 配置
+         */
+        public CacheSpec getSpec(String cacheName) {
+            CacheSpec spec = caches.get(cacheName);
+            if (spec == null) {
+                return defaults;
+            }
+            return new CacheSpec(
+                    spec.getMaximumSize() == null ? defaults.getMaximumSize() : spec.getMaximumSize(),
+                    spec.getLocalExpireSeconds() == null
+                            ? defaults.getLocalExpireSeconds() : spec.getLocalExpireSeconds(),
+                    spec.getExpireSeconds() == null ? defaults.getExpireSeconds() : spec.getExpireSeconds());
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheSpec {
+        /**
+         * 本地一级缓存的最大条数
+         */
+        private Long maximumSize;
+        /**
+         * 本地一级缓存的过期时长，单位秒，兜底漏收失效消息的情况
+         */
+        private Long localExpireSeconds;
+        /**
+         * redis二级缓存的过期时长，单位秒
+         */
+        private Long expireSeconds;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    public static class BonfireExport {
+        /**
+         * 同时执行的导出任务数
+         */
+        private Integer threads = 2;
+        /**
+         * 排队等待的导出任务数，超过时拒绝提交
+         */
+        private Integer queueCapacity = 20;
+        /**
+         * 每个用户同时排队和执行的导出任务数
+         */
+        private Integer maxPerUser = 2;
+        /**
+         * 临时文件和任务状态的保留时长，单位分钟，超过后定时删除
+         */
+        private Long tempFileTtlMinutes = 60L;
+        /**
+         * 下载token的有效期，单位秒，任务完成后查询进度时签发
+         */
+        private Long downloadTokenSeconds = 60L;
+        /**
+         * 导入时每批写库的行数，同时也是查重时in的元素个数，oracle限制in最多1000个
+         */
+        private Integer importBatchSize = 500;
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    @Data
+    public static class BonfireUpload {
+        /**
+         * 分片大小，单位字节，初始化上传时返回给客户端，最后一个分片可以小于该值
+         */
+        private Long chunkSize = 8L * 1024 * 1024;
+        /**
+         * 分片上传的最大文件大小，单位字节
+         */
+        private Long maxFileSize = 10L * 1024 * 1024 * 1024;
+        /**
+         * 上传的过期时长，单位分钟，超过该时长没有上传新分片的上传会被清理
+         */
+        private Long expireMinutes = 1440L;
+    }
+
+    /**
+     * 访问日志队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 直接丢弃
+         */
+        DROP,
+        /**
+         * 积压时按比例采样，队列满时丢弃
+         */
+        SAMPLE,
+        /**
+         * 阻塞请求线程等待，超时丢弃
+         */
+        BLOCK
+    }
+
     private Boolean captchaEnabled;
     private String defaultPassword;
     private BonfirePath mac;
     private BonfirePath win;
     private BonfirePath linux;
+    private BonfireAuthCache authCache = new BonfireAuthCache();
+    private BonfireAccessLog accessLog = new BonfireAccessLog();
+    private BonfirePassword password = new BonfirePassword();
+    private BonfireCaptcha captcha = new BonfireCaptcha();
+    private BonfireRateLimit rateLimit = new BonfireRateLimit();
+    private BonfireCache cache = new BonfireCache();
+    private BonfireExport export = new BonfireExport();
+    private BonfireUpload upload = new BonfireUpload();
 
     public BonfirePath getPath() {
         OsInfo osInfo = SystemUtil.getOsInfo();
@@ -2,7 +2,14 @@ package com.izneus.bonfire.config;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.izneus.bonfire.common.cache.GzipRedisSerializer;
+import com.izneus.bonfire.common.cache.TieredCacheManager;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.module.system.controller.v1.vo.CacheDictVO;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -11,12 +18,18 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * redis配置
@@ -57,16 +70,70 @@ public class RedisConfig {
         return serializer;
     }
 
+    /**
+     * 两级缓存，本地caffeine在前，redis在后，各缓存的大小和过期时间见bonfire.cache
+     */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
-        // 设置缓存属性，主要是默认过期时间2小时和key和value的序列化器
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, BonfireConfig bonfireConfig,
+                                     RedisUtil redisUtil, RedisMessageListenerContainer redisMessageListenerContainer,
+                                     MeterRegistry meterRegistry) {
+        BonfireConfig.BonfireCache cacheConfig = bonfireConfig.getCache();
+        int threshold = cacheConfig.getCompressThreshold();
+        // 设置缓存属性，主要是默认过期时间和key和value的序列化器，超过阈值的值压缩
         RedisCacheConfiguration redisCacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
                 .disableCachingNullValues()
-                .entryTtl(Duration.ofHours(2))
+                .entryTtl(Duration.ofSeconds(cacheConfig.getDefaults().getExpireSeconds()))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair
                         .fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(jacksonRedisSerializer()));
-        return RedisCacheManager.builder(redisConnectionFactory).cacheDefaults(redisCacheConfiguration).build();
+                        .fromSerializer(new GzipRedisSerializer<>(jacksonRedisSerializer(), threshold)));
+        // 登记了值类型的缓存用不带类型信息的json，单独配置了过期时间的缓存用各自的过期时间
+        ObjectMapper typedObjectMapper = new ObjectMapper();
+        typedObjectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        Map<String, JavaType> valueTypes = cacheValueTypes(typedObjectMapper.getTypeFactory());
+        Set<String> cacheNames = new HashSet<>(valueTypes.keySet());
+        cacheNames.addAll(cacheConfig.getCaches().keySet());
+        Map<String, RedisCacheConfiguration> initialConfigurations = new HashMap<>();
+        for (String cacheName : cacheNames) {
+            RedisCacheConfiguration configuration = redisCacheConfiguration
+                    .entryTtl(Duration.ofSeconds(cacheConfig.getSpec(cacheName).getExpireSeconds()));
+            JavaType valueType = valueTypes.get(cacheName);
+            if (valueType != null) {
+                Jackson2JsonRedisSerializer<Object> typedSerializer = new Jackson2JsonRedisSerializer<>(valueType);
+                typedSerializer.setObjectMapper(typedObjectMapper);
+                configuration = configuration.serializeValuesWith(RedisSerializationContext.SerializationPair
+                        .fromSerializer(new GzipRedisSerializer<>(typedSerializer, threshold)));
+            }
+            initialConfigurations.put(cacheName, configuration);
+        }
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
+                .cacheDefaults(redisCacheConfiguration)
+                .withInitialCacheConfigurations(initialConfigurations)
+                .build();
+        // 不是bean，需要自己初始化
+        redisCacheManager.afterPropertiesSet();
+        return new TieredCacheManager(redisCacheManager, cacheConfig, redisUtil, redisMessageListenerContainer,
+                meterRegistry);
+    }
+
+    /**
+     * 缓存值的类型，按缓存名称登记，序列化时不再写入类名，体积更小，读写更快，
+     * 新增@Cacheable时在这里登记，未登记的缓存仍用带类型信息的jacksonRedisSerializer
+     */
+    private static Map<String, JavaType> cacheValueTypes(TypeFactory typeFactory) {
+        Map<String, JavaType> valueTypes = new HashMap<>();
+        // SysDictServiceImpl.cacheDicts
+        valueTypes.put("dict", typeFactory.constructCollectionType(List.class, CacheDictVO.class));
+        return valueTypes;
+    }
+
+    /**
+     * redis消息订阅的容器，各组件自行向容器注册需要监听的频道
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
     }
 }
@@ -45,7 +45,7 @@ public class SchedJobController {
     private final SchedJobLogService jobLogService;
 
     @AccessLog("任务列表")
-    @ApiOperation("任务列表")
+    @ApiOperation("任务列表，支持游标分页")
     @GetMapping("/jobs")
     @PreAuthorize("hasAuthority('sched:jobs:list')")
     public BasePageVO<ListJobVO> listJobs(@Validated ListJobQuery query) {
@@ -120,7 +120,7 @@ public class SchedJobController {
     }
 
     @AccessLog("任务日志列表")
-    @ApiOperation("任务日志列表")
+    @ApiOperation("任务日志列表，支持游标分页")
     @GetMapping("/jobs/{jobId}/logs")
     @PreAuthorize("hasAuthority('sched:logs:list')")
     public BasePageVO<ListLogVO> listLogs(@NotBlank @PathVariable String jobId, @Validated ListLogQuery query) {
@@ -2,6 +2,7 @@ package com.izneus.bonfire.module.quartz.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.izneus.bonfire.common.base.CursorPage;
 import com.izneus.bonfire.module.quartz.controller.v1.query.ListLogQuery;
 import com.izneus.bonfire.module.quartz.entity.SchedJobLogEntity;
 import com.izneus.bonfire.module.quartz.mapper.SchedJobLogMapper;
@@ -22,11 +23,13 @@ public class SchedJobLogServiceImpl extends ServiceImpl<SchedJobLogMapper, Sched
 
     @Override
     public Page<SchedJobLogEntity> listLogsByJobId(String jobId, ListLogQuery query) {
-        return page(
-                new Page<>(query.getPageNum(), query.getPageSize()),
-                new LambdaQueryWrapper<SchedJobLogEntity>()
-                        .eq(SchedJobLogEntity::getJobId, jobId)
-                        .orderByDesc(SchedJobLogEntity::getCreateTime)
-        );
+        LambdaQueryWrapper<SchedJobLogEntity> wrapper = new LambdaQueryWrapper<SchedJobLogEntity>()
+                .eq(SchedJobLogEntity::getJobId, jobId);
+        // 日志表数据量大，深翻页用游标
+        if (CursorPage.isRequested(query)) {
+            return CursorPage.seek(this, query, wrapper, SchedJobLogEntity::getCreateTime, SchedJobLogEntity::getId);
+        }
+        return page(new Page<>(query.getPageNum(), query.getPageSize()),
+                wrapper.orderByDesc(SchedJobLogEntity::getCreateTime));
     }
 }
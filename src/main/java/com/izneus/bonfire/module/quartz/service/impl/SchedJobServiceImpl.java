@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.izneus.bonfire.common.base.CursorPage;
 import com.izneus.bonfire.common.constant.Dict;
 import com.izneus.bonfire.module.quartz.controller.v1.query.JobQuery;
 import com.izneus.bonfire.module.quartz.controller.v1.query.ListJobQuery;
@@ -37,13 +38,14 @@ public class SchedJobServiceImpl extends ServiceImpl<SchedJobMapper, SchedJobEnt
 
     @Override
     public Page<SchedJobEntity> listJobs(ListJobQuery query) {
-        return page(
-                new Page<>(query.getPageNum(), query.getPageSize()),
-                new LambdaQueryWrapper<SchedJobEntity>()
-                        .like(StrUtil.isNotBlank(query.getJobName()), SchedJobEntity::getJobName, query.getJobName())
-                        .eq(StrUtil.isNotBlank(query.getStatus()), SchedJobEntity::getStatus, query.getStatus())
-                        .orderByDesc(SchedJobEntity::getCreateTime)
-        );
+        LambdaQueryWrapper<SchedJobEntity> wrapper = new LambdaQueryWrapper<SchedJobEntity>()
+                .like(StrUtil.isNotBlank(query.getJobName()), SchedJobEntity::getJobName, query.getJobName())
+                .eq(StrUtil.isNotBlank(query.getStatus()), SchedJobEntity::getStatus, query.getStatus());
+        if (CursorPage.isRequested(query)) {
+            return CursorPage.seek(this, query, wrapper, SchedJobEntity::getCreateTime, SchedJobEntity::getId);
+        }
+        return page(new Page<>(query.getPageNum(), query.getPageSize()),
+                wrapper.orderByDesc(SchedJobEntity::getCreateTime));
     }
 
     @Override
@@ -39,7 +39,7 @@ public class QuartzUtils {
             scheduler.scheduleJob(jobDetail, trigger);
 
             // 暂停任务
-            if (job.getStatus().equals(Dict.JobStatus.PAUSE.getValue())) {
+            if (Dict.JobStatus.of(job.getStatus()) == Dict.JobStatus.PAUSE) {
                 pauseJob(scheduler, job.getId());
             }
         } catch (SchedulerException e) {
@@ -88,7 +88,7 @@ public class QuartzUtils {
             scheduler.rescheduleJob(triggerKey, trigger);
 
             // 暂停任务
-            if (job.getStatus().equals(Dict.JobStatus.PAUSE.getValue())) {
+            if (Dict.JobStatus.of(job.getStatus()) == Dict.JobStatus.PAUSE) {
                 pauseJob(scheduler, job.getId());
             }
         } catch (SchedulerException e) {
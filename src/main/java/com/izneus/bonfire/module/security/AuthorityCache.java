@@ -0,0 +1,214 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_CHANNEL_AUTHS;
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_AUTHS;
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_SESSIONS;
+
+/**
+ * 用户权限和登录会话的本地缓存，放在redis前面，缓存已经构造好的不可变权限集合和有效的jti，
+ * 避免每次请求都读一次redis再拆分字符串构造权限对象，未命中时权限和会话在一次往返中读出，
+ * 改写redis中user:{id}:auths或user:{id}:sessions的地方需要调用invalidate，通过redis频道通知所有节点失效
+ *
+ * @author Izneus
+ * @date 2021/03/22
+ */
+@Component
+public class AuthorityCache implements MessageListener {
+
+    /**
+     * 读出权限和未过期的会话，第一个元素是权限，其余是jti
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> GET_AUTHS_AND_SESSIONS = new DefaultRedisScript<>(
+            "local r = redis.call('ZRANGEBYSCORE', KEYS[2], ARGV[1], '+inf') " +
+                    "table.insert(r, 1, redis.call('GET', KEYS[1])) " +
+                    "return r",
+            List.class);
+
+    /**
+     * 比较token签发时间和缓存加载时间时的余量，覆盖iat的秒级精度和节点间的时钟偏差
+     */
+    private static final long CLOCK_SKEW_MILLIS = 5000;
+
+    private final RedisUtil redisUtil;
+    private final Cache<String, Entry> cache;
+
+    public AuthorityCache(BonfireConfig bonfireConfig, RedisUtil redisUtil,
+                          RedisMessageListenerContainer listenerContainer, MeterRegistry meterRegistry) {
+        this.redisUtil = redisUtil;
+        BonfireConfig.BonfireAuthCache config = bonfireConfig.getAuthCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        // 命中、未命中次数等指标，见/actuator/metrics/cache.gets
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "authCache");
+        listenerContainer.addMessageListener(this, new ChannelTopic(REDIS_CHANNEL_AUTHS));
+    }
+
+    /**
+     * 获取用户权限和会话，本地未命中时从redis加载
+     *
+     * @param userId 用户id
+     * @return 权限和会话
+     */
+    public Entry get(String userId) {
+        return cache.get(userId, this::load);
+    }
+
+    /**
+     * 失效所有节点上该用户的本地权限缓存，需要在redis写入之后调用
+     *
+     * @param userId 用户id
+     */
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+        redisUtil.publish(REDIS_CHANNEL_AUTHS, userId);
+    }
+
+    /**
+     * 批量失效所有节点上这些用户的本地权限缓存，只发一条消息
+     *
+     * @param userIds 用户id
+     */
+    public void invalidateAll(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(userIds);
+        redisUtil.publish(REDIS_CHANNEL_AUTHS, new ArrayList<>(userIds));
+    }
+
+    /**
+     * 丢弃本节点的缓存，重新从redis加载
+     *
+     * @param userId 用户id
+     * @return 权限和会话
+     */
+    public Entry reload(String userId) {
+        cache.invalidate(userId);
+        return cache.get(userId, this::load);
+    }
+
+    /**
+     * 只失效本节点的缓存，调用方已经在写redis的同一次往返中发布了失效消息
+     *
+     * @param userId 用户id
+     */
+    void evict(String userId) {
+        cache.invalidate(userId);
+    }
+
+    /**
+     * 缓存统计，命中数、未命中数等
+     *
+     * @return CacheStats
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisUtil.deserialize(message.getBody());
+        if (body instanceof Collection) {
+            cache.invalidateAll((Collection<?>) body);
+        } else if (body != null) {
+            cache.invalidate(String.valueOf(body));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry load(String userId) {
+        long loadTime = System.currentTimeMillis();
+        List<Object> values = redisUtil.execute(GET_AUTHS_AND_SESSIONS,
+                (RedisSerializer<List>) (RedisSerializer<?>) RedisSerializer.byteArray(),
+                Arrays.asList(StrUtil.format(REDIS_KEY_AUTHS, userId), StrUtil.format(REDIS_KEY_SESSIONS, userId)),
+                System.currentTimeMillis());
+        if (values == null || values.isEmpty()) {
+            return new Entry(Collections.emptyList(), Collections.emptySet(), loadTime);
+        }
+        // 权限按字符串写入，没有该key时为空权限
+        byte[] auths = (byte[]) values.get(0);
+        String authString = auths == null ? null : new String(auths, StandardCharsets.UTF_8);
+        Collection<GrantedAuthority> authorities = !StringUtils.hasText(authString) ? Collections.emptyList()
+                : Collections.unmodifiableList(Arrays.stream(authString.split(","))
+                .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList()));
+        // jti按字符串写入
+        Set<String> sessions = new HashSet<>();
+        for (Object jti : values.subList(1, values.size())) {
+            sessions.add(new String((byte[]) jti, StandardCharsets.UTF_8));
+        }
+        return new Entry(authorities, Collections.unmodifiableSet(sessions), loadTime);
+    }
+
+    /**
+     * 用户的权限和有效会话
+     */
+    @AllArgsConstructor
+    public static class Entry {
+        @Getter
+        private final Collection<GrantedAuthority> authorities;
+        private final Set<String> sessions;
+        /**
+         * 从redis加载的时间戳
+         */
+        private final long loadTime;
+
+        /**
+         * jti对应的会话是否有效，登出、被踢下线或者超出设备数被挤掉后无效
+         *
+         * @param jti token的jti
+         * @return 是否有效
+         */
+        public boolean hasSession(String jti) {
+            return jti != null && sessions.contains(jti);
+        }
+
+        /**
+         * 是否可能在该时间之前加载，jwt的iat精确到秒，并且各节点时钟有偏差，按一定余量比较
+         *
+         * @param time 时间，一般是token的签发时间
+         * @return 是否可能在之前加载
+         */
+        public boolean isLoadedBefore(Date time) {
+            return time != null && loadTime < time.getTime() + CLOCK_SKEW_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.izneus.bonfire.module.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 角色、权限数据变更事件，由修改数据的service在事务内发布，
+ * 监听方在事务提交后更新角色权限索引，并改写受影响用户在redis中的权限
+ *
+ * @author Izneus
+ * @date 2021/03/28
+ */
+@Getter
+@AllArgsConstructor
+public class AuthorityChangeEvent {
+
+    /**
+     * 变更的数据类型
+     */
+    public enum Target {
+        /**
+         * 角色新增、改名、删除或者重新设置了权限，id为roleId
+         */
+        ROLE,
+        /**
+         * 权限新增、改名或删除，id为authorityId
+         */
+        AUTHORITY,
+        /**
+         * 用户的角色变更，id为userId
+         */
+        USER
+    }
+
+    private final Target target;
+    private final String id;
+}
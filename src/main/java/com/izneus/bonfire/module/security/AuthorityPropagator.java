@@ -0,0 +1,92 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.module.system.entity.SysUserRoleEntity;
+import com.izneus.bonfire.module.system.service.SysUserRoleService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_AUTHS;
+
+/**
+ * 角色、权限变更后主动推送到已登录用户，
+ * 事务提交后通过SYS_USER_ROLE找出受影响的用户，重新计算权限并批量改写redis中已存在的user:{id}:auths，
+ * 再广播失效各节点的本地权限缓存，权限变更几秒内生效，不需要用户重新登录
+ *
+ * @author Izneus
+ * @date 2021/03/29
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuthorityPropagator {
+
+    /**
+     * 每批处理的用户数，也是in查询的参数个数，oracle的in最多1000个
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private final RoleAuthorityIndex roleAuthorityIndex;
+    private final SysUserRoleService userRoleService;
+    private final AuthorityCache authorityCache;
+    private final RedisUtil redisUtil;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAuthorityChange(AuthorityChangeEvent event) {
+        // 先更新角色权限索引，后面用新索引计算权限
+        Set<String> roleIds = roleAuthorityIndex.applyChange(event);
+        Set<String> userIds = event.getTarget() == AuthorityChangeEvent.Target.USER
+                ? Collections.singleton(event.getId()) : listUserIds(roleIds);
+        for (List<String> batch : CollUtil.split(userIds, BATCH_SIZE)) {
+            refresh(batch);
+        }
+        if (userIds.size() > 0) {
+            log.info("{} {} 变更，已刷新{}个用户的权限", event.getTarget(), event.getId(), userIds.size());
+        }
+    }
+
+    private Set<String> listUserIds(Collection<String> roleIds) {
+        if (roleIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return userRoleService.list(new LambdaQueryWrapper<SysUserRoleEntity>()
+                .select(SysUserRoleEntity::getUserId)
+                .in(SysUserRoleEntity::getRoleId, roleIds))
+                .stream().map(SysUserRoleEntity::getUserId).collect(Collectors.toSet());
+    }
+
+    private void refresh(List<String> userIds) {
+        // 一次查出这批用户的全部角色
+        Map<String, List<String>> userRoles = new HashMap<>(userIds.size());
+        for (SysUserRoleEntity userRole : userRoleService.list(new LambdaQueryWrapper<SysUserRoleEntity>()
+                .select(SysUserRoleEntity::getUserId, SysUserRoleEntity::getRoleId)
+                .in(SysUserRoleEntity::getUserId, userIds))) {
+            userRoles.computeIfAbsent(userRole.getUserId(), k -> new ArrayList<>()).add(userRole.getRoleId());
+        }
+        Map<String, String> values = new HashMap<>(userIds.size());
+        for (String userId : userIds) {
+            String authString = roleAuthorityIndex.getAuthString(
+                    userRoles.getOrDefault(userId, Collections.emptyList()));
+            // 没有角色的用户写空串，鉴权时得到空权限
+            values.put(StrUtil.format(REDIS_KEY_AUTHS, userId), authString == null ? "" : authString);
+        }
+        // 只改写已登录用户的key，保留原过期时间，pipeline一次往返
+        redisUtil.setIfExistsKeepTtl(values);
+        authorityCache.invalidateAll(new HashSet<>(userIds));
+    }
+}
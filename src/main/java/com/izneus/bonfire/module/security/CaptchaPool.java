@@ -0,0 +1,126 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.izneus.bonfire.config.BonfireConfig;
+import com.wf.captcha.ArithmeticCaptcha;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 预先生成的验证码池，获取验证码的接口不需要登录，每次请求都当场画图和base64编码很容易被刷满cpu，
+ * 改为后台线程把画好的验证码放进有界队列，池满时阻塞等待，取走多少补多少，
+ * 请求线程只取出一个，池空时才当场生成，每个验证码只用一次
+ *
+ * @author Izneus
+ * @date 2021/04/01
+ */
+@Slf4j
+@Component
+public class CaptchaPool {
+
+    private static final int WIDTH = 130;
+    private static final int HEIGHT = 48;
+
+    private final BonfireConfig.BonfireCaptcha config;
+    private final BlockingQueue<Captcha> pool;
+    private final Counter missCounter;
+
+    private ExecutorService producers;
+
+    public CaptchaPool(BonfireConfig bonfireConfig, MeterRegistry meterRegistry) {
+        this.config = bonfireConfig.getCaptcha();
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, config.getPoolSize()));
+        // 池中剩余数量和池空时当场生成的次数，见/actuator/metrics
+        Gauge.builder("bonfire.captcha.pool.size", pool, BlockingQueue::size)
+                .description("验证码池中剩余的验证码数量")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("bonfire.captcha.pool.misses")
+                .description("验证码池为空时当场生成的次数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (config.getPoolSize() <= 0) {
+            return;
+        }
+        int threads = Math.max(1, config.getRefillThreads());
+        producers = Executors.newFixedThreadPool(threads, new NamedThreadFactory("captcha-producer-", true));
+        for (int i = 0; i < threads; i++) {
+            producers.execute(this::produce);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (producers != null) {
+            producers.shutdownNow();
+        }
+    }
+
+    /**
+     * 取出一个验证码，池空时当场生成
+     *
+     * @return 验证码
+     */
+    public Captcha take() {
+        Captcha captcha = pool.poll();
+        if (captcha == null) {
+            missCounter.increment();
+            captcha = render();
+        }
+        return captcha;
+    }
+
+    private void produce() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                pool.put(render());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // 画图失败不影响接口，池空时请求线程自己生成
+                log.error("生成验证码失败", e);
+            }
+        }
+    }
+
+    private static Captcha render() {
+        /// 图片验证码
+        /*SpecCaptcha specCaptcha = new SpecCaptcha(WIDTH, HEIGHT, 5);
+        String value = specCaptcha.text().toLowerCase();*/
+
+        // 算术验证码
+        ArithmeticCaptcha captcha = new ArithmeticCaptcha(WIDTH, HEIGHT);
+        String text = captcha.text();
+        return new Captcha(text, captcha.toBase64());
+    }
+
+    /**
+     * 已生成的验证码
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Captcha {
+        /**
+         * 验证码答案
+         */
+        private final String text;
+        /**
+         * base64编码的图片
+         */
+        private final String image;
+    }
+}
@@ -30,6 +30,19 @@ public class CurrentUserUtil {
         throw new BadRequestException(ErrorCode.UNAUTHENTICATED, "找不到当前登录的信息");
     }
 
+    /**
+     * 获取当前请求的jwt
+     *
+     * @return jwt
+     */
+    public static String getToken() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getCredentials() instanceof String)) {
+            throw new BadRequestException(ErrorCode.UNAUTHENTICATED, "找不到当前登录的信息");
+        }
+        return (String) authentication.getCredentials();
+    }
+
     /**
      * 判断当前用户是否有某个角色
      *
@@ -56,12 +69,22 @@ public class CurrentUserUtil {
      * @return userId
      */
     public static String getFillUserId() {
+        SecurityUser user = getFillUser();
+        return user == null ? null : user.getId();
+    }
+
+    /**
+     * 获取当前用户，不抛错，未登录时返回null，是给访问日志等旁路记录用的
+     *
+     * @return SecurityUser
+     */
+    public static SecurityUser getFillUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null) {
             return null;
         }
-        if (authentication.getPrincipal() instanceof UserDetails) {
-            return ((SecurityUser) authentication.getPrincipal()).getId();
+        if (authentication.getPrincipal() instanceof SecurityUser) {
+            return (SecurityUser) authentication.getPrincipal();
         } else {
             return null;
         }
@@ -13,7 +13,38 @@ import org.springframework.context.annotation.Configuration;
 @Data
 public class JwtConfig {
     private String secret;
+    /**
+     * token有效时长，单位秒
+     */
     private Long expire;
+    /**
+     * token剩余有效时长小于该值时续期，单位秒
+     */
+    private Long detect = 600L;
+    /**
+     * 续期后的新token放在该响应头里返回
+     */
+    private String renewHeader = "X-Renewed-Token";
+    /**
+     * 本地布隆过滤器预计容纳的已吊销token数量，超过后误判率上升
+     */
+    private Integer blacklistCapacity = 100000;
+    /**
+     * 本地布隆过滤器的误判率，误判时多查一次redis
+     */
+    private Double blacklistFpp = 0.001;
+    /**
+     * 本地布隆过滤器从redis全量重建的间隔，单位秒，用来清除已过期的jti和补上漏收的消息
+     */
+    private Long blacklistRefreshSeconds = 300L;
+    /**
+     * 每个用户同时在线的会话数，超出时挤掉最早过期的会话，1即单点登录，0不限制
+     */
+    private Integer maxSessions = 0;
     private String header;
     private String type;
+    /**
+     * 已校验token缓存的最大数量
+     */
+    private Long cacheSize = 10000L;
 }
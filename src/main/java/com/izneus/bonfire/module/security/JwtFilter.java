@@ -32,11 +32,15 @@ public class JwtFilter extends OncePerRequestFilter {
         String token = resolveToken(httpServletRequest);
         if (StringUtils.hasText(token)) {
             Authentication authentication = jwtUtil.getAuthentication(token);
-            // 临时性的白名单措施
+            // 已吊销或会话已下线的token不设置认证信息，也不续期
             if (authentication != null) {
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                // jwt续期，快过期时在响应头返回新token
+                String renewedToken = jwtUtil.renewToken(jwtUtil.getClaims(token));
+                if (renewedToken != null) {
+                    httpServletResponse.setHeader(jwtConfig.getRenewHeader(), renewedToken);
+                }
             }
-            // todo jwt续期
         }
         filterChain.doFilter(httpServletRequest, httpServletResponse);
     }
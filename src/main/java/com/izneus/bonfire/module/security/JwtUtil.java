@@ -1,24 +1,26 @@
 package com.izneus.bonfire.module.security;
 
 import cn.hutool.core.util.IdUtil;
-import cn.hutool.core.util.StrUtil;
-import com.izneus.bonfire.common.util.RedisUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
 import java.security.Key;
-import java.util.*;
-import java.util.stream.Collectors;
-
-import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_AUTHS;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Izneus
@@ -27,31 +29,78 @@ import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_AUTHS;
 @Component
 public class JwtUtil {
 
+    /**
+     * 用户名的claim，只用于日志等展示，鉴权仍以subject中的userId为准
+     */
+    private static final String CLAIM_USERNAME = "username";
+
     private final JwtConfig jwtConfig;
-    private final RedisUtil redisUtil;
+    private final AuthorityCache authorityCache;
+    private final SessionRegistry sessionRegistry;
+    private final TokenBlacklist tokenBlacklist;
 
-    private Key key;
+    private final Key key;
+    /**
+     * 线程安全的jwt解析器，只在构造时创建一次
+     */
+    private final JwtParser jwtParser;
+    /**
+     * 最近校验通过的token，key为token的sha256，过期时间不超过token本身的exp，
+     * 同一个token重复请求时跳过签名校验和claims反序列化
+     */
+    private final Cache<String, Claims> verifiedTokens;
 
-    public JwtUtil(JwtConfig jwtConfig, RedisUtil redisUtil) {
+    public JwtUtil(JwtConfig jwtConfig, AuthorityCache authorityCache, SessionRegistry sessionRegistry,
+                   TokenBlacklist tokenBlacklist) {
         this.jwtConfig = jwtConfig;
-        this.redisUtil = redisUtil;
+        this.authorityCache = authorityCache;
+        this.sessionRegistry = sessionRegistry;
+        this.tokenBlacklist = tokenBlacklist;
         /// 可以通过下面的代码随机生成secret字符串
         // SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
         // String secretString = Encoders.BASE64.encode(key.getEncoded());
         this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtConfig.getSecret()));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtConfig.getCacheSize())
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String tokenHash, Claims claims, long currentTime) {
+                        Date expiration = claims.getExpiration();
+                        long millis = expiration == null ? 0 : expiration.getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tokenHash, Claims claims, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tokenHash, Claims claims, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     /**
      * 默认的创建jwt方法，一般是给login过程生成token
      *
-     * @param userId 用户id
+     * @param userId   用户id
+     * @param username 用户名
      * @return jwt
      */
-    public String createToken(String userId) {
+    public String createToken(String userId, String username) {
         Date nowDate = new Date();
         Date expireDate = new Date(nowDate.getTime() + jwtConfig.getExpire() * 1000);
         return Jwts.builder()
                 .setSubject(userId)
+                .claim(CLAIM_USERNAME, username)
                 .setId(IdUtil.fastSimpleUUID())
                 .setExpiration(expireDate)
                 .setIssuedAt(nowDate)
@@ -80,33 +129,82 @@ public class JwtUtil {
                 .compact();
     }
 
+    /**
+     * token即将过期时续期，新token沿用原token的jti和claims，jti即一次登录会话的标识，
+     * 同一会话并发续期时只有一个请求生成新token，其他请求拿到同一个新token，
+     * 加锁和延长redis中会话、权限的过期时间在一次往返中完成，
+     * 会话已失效（已登出、被踢下线或被挤掉）时不续期
+     *
+     * @param claims 已校验的claims
+     * @return 新token，不需要续期或者不能续期时返回null
+     */
+    public String renewToken(Claims claims) {
+        long remaining = claims.getExpiration().getTime() - System.currentTimeMillis();
+        if (remaining > jwtConfig.getDetect() * 1000) {
+            return null;
+        }
+        Date nowDate = new Date();
+        Date expireDate = new Date(nowDate.getTime() + jwtConfig.getExpire() * 1000);
+        String token = Jwts.builder()
+                .setClaims(new HashMap<>(claims))
+                .setIssuedAt(nowDate)
+                .setExpiration(expireDate)
+                .signWith(key)
+                .compact();
+        // 锁的时长覆盖旧token剩余的续期窗口，窗口内带旧token的请求都拿到同一个新token
+        return sessionRegistry.renew(claims.getSubject(), claims.getId(), token, expireDate.getTime());
+    }
+
+    /**
+     * 吊销token，同一会话续期得到的token一并失效
+     *
+     * @param token jwt
+     */
+    public void revokeToken(String token) {
+        tokenBlacklist.revoke(getClaims(token).getId());
+    }
+
+    /**
+     * 校验token并构造认证信息
+     *
+     * @param token jwt
+     * @return 认证信息，token已吊销或会话已下线时返回null
+     */
     Authentication getAuthentication(String token) {
         // 获得claims
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        // redis获得权限字符串
+        Claims claims = getClaims(token);
+        // 黑名单，绝大多数情况只查本地布隆过滤器
+        if (tokenBlacklist.isRevoked(claims.getId())) {
+            return null;
+        }
+        // 本地缓存获得权限和会话，未命中时一次读redis
         String userId = claims.getSubject();
-        String authString = (String) redisUtil.get(StrUtil.format(REDIS_KEY_AUTHS, userId));
-        // 没有该key，即白名单
-        /*if (null == authString) {
+        AuthorityCache.Entry entry = authorityCache.get(userId);
+        // 在其他节点刚登录的会话，本节点的缓存可能在失效消息到达之前加载，token签发前加载的缓存重新读一次redis，
+        // 已下线的旧token签发时间早于缓存，直接拒绝，不会每次都读redis
+        if (!entry.hasSession(claims.getId()) && entry.isLoadedBefore(claims.getIssuedAt())) {
+            entry = authorityCache.reload(userId);
+        }
+        // 会话已下线，被踢或者超出设备数被挤掉
+        if (!entry.hasSession(claims.getId())) {
             return null;
-        }*/
-        // 构造Authority
-        Collection<? extends GrantedAuthority> authorities = StringUtils.hasText(authString)
-                ? Arrays.stream(authString.split(",")).map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList()) : Collections.emptyList();
-        SecurityUser principal = new SecurityUser(claims.getSubject(), "*", "*", authorities);
+        }
+        Collection<GrantedAuthority> authorities = entry.getAuthorities();
+        // 旧token没有用户名claim
+        String username = claims.get(CLAIM_USERNAME, String.class);
+        SecurityUser principal = new SecurityUser(userId, username == null ? "*" : username, "*", authorities);
         return new UsernamePasswordAuthenticationToken(principal, token, authorities);
     }
 
+    /**
+     * 校验token并获得claims，校验失败或过期时抛出JwtException，
+     * 返回的claims可能被缓存共享，调用方不要修改
+     *
+     * @param token jwt
+     * @return claims
+     */
     public Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return verifiedTokens.get(DigestUtil.sha256Hex(token),
+                tokenHash -> jwtParser.parseClaimsJws(token).getBody());
     }
 }
@@ -0,0 +1,114 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.izneus.bonfire.common.constant.ErrorCode;
+import com.izneus.bonfire.common.exception.BadRequestException;
+import com.izneus.bonfire.config.BonfireConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 密码哈希和校验，bcrypt是登录过程中最耗cpu的一步，
+ * 放到单独的有界线程池里执行，限制同时计算的数量，登录高峰时不至于占满cpu拖慢其他接口，
+ * 排队满或者等待超时时返回资源不足，
+ * 超时的请求已经开始的哈希仍会算完，持续过载时线程可能都在算没人等的哈希，
+ * 所以排队长度要满足 queueCapacity / 每秒哈希数 < timeoutMillis，让排到的请求基本都等得到结果
+ *
+ * @author Izneus
+ * @date 2021/03/27
+ */
+@Slf4j
+@Component
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder, BonfireConfig bonfireConfig, MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        BonfireConfig.BonfirePassword config = bonfireConfig.getPassword();
+        this.timeoutMillis = config.getTimeoutMillis();
+        this.executor = new ThreadPoolExecutor(config.getMaxConcurrent(), config.getMaxConcurrent(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                new NamedThreadFactory("password-hasher-", true),
+                new ThreadPoolExecutor.AbortPolicy());
+        // 线程池排队、拒绝等指标，见/actuator/metrics/executor.queued
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "passwordHasher");
+    }
+
+    /**
+     * 校验密码
+     *
+     * @param rawPassword     明文密码
+     * @param encodedPassword 数据库中的密码哈希
+     * @return 是否匹配
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * 生成密码哈希
+     *
+     * @param rawPassword 明文密码
+     * @return 密码哈希
+     */
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * 密码哈希的强度是否低于当前配置，需要在登录成功后重新哈希
+     *
+     * @param encodedPassword 数据库中的密码哈希
+     * @return 是否需要重新哈希
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new BadRequestException(ErrorCode.RESOURCE_EXHAUSTED, "当前登录人数过多，请稍后重试");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 只有还在排队的任务会被丢弃，bcrypt不检查中断，已经开始的哈希会算完才释放线程
+            future.cancel(false);
+            throw new BadRequestException(ErrorCode.RESOURCE_EXHAUSTED, "当前登录人数过多，请稍后重试");
+        } catch (InterruptedException e) {
+            // 先恢复中断标记再抛出，CANCELLED的499不是合法的http状态码，这里用503，
+            // 同样只能丢弃还在排队的任务
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new BadRequestException(ErrorCode.UNAVAILABLE, "请求已中断，请稍后重试");
+        } catch (ExecutionException e) {
+            log.error("密码哈希失败", e.getCause());
+            throw new BadRequestException(ErrorCode.INTERNAL, "密码校验失败", e.getCause());
+        }
+    }
+}
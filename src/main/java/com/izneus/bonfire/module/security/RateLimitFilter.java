@@ -0,0 +1,67 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.extra.servlet.ServletUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.izneus.bonfire.common.constant.ErrorCode;
+import com.izneus.bonfire.common.exception.ApiError;
+import com.izneus.bonfire.config.BonfireConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 匿名接口按客户端ip和接口限流，放在JwtFilter前面，被拒绝的请求不再解析token，
+ * 按用户名的限流需要请求体，在LoginServiceImpl里做
+ *
+ * @author Izneus
+ * @date 2021/04/02
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final BonfireConfig bonfireConfig;
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        BonfireConfig.BonfireRateLimit config = bonfireConfig.getRateLimit();
+        if (!config.getEnabled()) {
+            return true;
+        }
+        String uri = request.getRequestURI();
+        return config.getPaths().stream().noneMatch(path -> pathMatcher.match(path, uri));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String key = "ip:" + ServletUtil.getClientIP(httpServletRequest) + ":" + httpServletRequest.getRequestURI();
+        long wait = rateLimiter.tryAcquire(key, bonfireConfig.getRateLimit().getIp());
+        if (wait > 0) {
+            // 和全局异常处理统一返回数据
+            httpServletResponse.setContentType("application/json");
+            httpServletResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            httpServletResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            httpServletResponse.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(TimeUnit.MILLISECONDS.toSeconds(wait + 999)));
+            objectMapper.writeValue(httpServletResponse.getWriter(),
+                    new ApiError(ErrorCode.RESOURCE_EXHAUSTED, "请求过于频繁，请稍后重试", null));
+            return;
+        }
+        filterChain.doFilter(httpServletRequest, httpServletResponse);
+    }
+}
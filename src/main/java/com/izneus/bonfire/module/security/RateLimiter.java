@@ -0,0 +1,115 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_RATE_LIMIT;
+
+/**
+ * 基于redis的分布式令牌桶限流，取令牌是一个原子的lua脚本，所有节点共享同一个桶，
+ * 被拒绝的客户端在本地记下可以重试的时间，等待期内的请求直接在本地拒绝，不访问redis，
+ * redis不可用时放行，限流不影响正常登录
+ *
+ * @author Izneus
+ * @date 2021/04/02
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    /**
+     * 按经过的时间补充令牌后取一个，返回0表示成功，否则返回还需等待的毫秒数，
+     * 桶空闲到补满所需的时间后自动过期，
+     * 时间取redis的TIME，各节点的时钟偏差不会多补令牌，
+     * redis 5以下脚本里先读TIME再写需要replicate_commands
+     */
+    private static final RedisScript<Long> TAKE_TOKEN = new DefaultRedisScript<>(
+            "redis.replicate_commands() " +
+                    "local capacity = tonumber(ARGV[1]) " +
+                    "local rate = tonumber(ARGV[2]) " +
+                    "local time = redis.call('TIME') " +
+                    "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+                    "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+                    "local tokens = tonumber(bucket[1]) or capacity " +
+                    "local ts = tonumber(bucket[2]) or now " +
+                    "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate) " +
+                    "local wait = 0 " +
+                    "if tokens >= 1 then tokens = tokens - 1 " +
+                    "else wait = math.ceil((1 - tokens) / rate) end " +
+                    "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now)) " +
+                    "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate)) " +
+                    "return wait",
+            Long.class);
+
+    private final RedisUtil redisUtil;
+    /**
+     * 被拒绝的限流对象和可以重试的时间戳
+     */
+    private final Cache<String, Long> blockedUntil;
+    private final Counter localRejected;
+    private final Counter redisRejected;
+
+    public RateLimiter(RedisUtil redisUtil, BonfireConfig bonfireConfig, MeterRegistry meterRegistry) {
+        this.redisUtil = redisUtil;
+        this.blockedUntil = Caffeine.newBuilder()
+                .maximumSize(bonfireConfig.getRateLimit().getLocalCacheSize())
+                .expireAfterWrite(1, TimeUnit.HOURS)
+                .build();
+        // 本地直接拒绝和查redis后拒绝的次数，见/actuator/metrics/bonfire.rateLimit.rejected
+        this.localRejected = Counter.builder("bonfire.rateLimit.rejected")
+                .tag("source", "local")
+                .description("被限流拒绝的请求数")
+                .register(meterRegistry);
+        this.redisRejected = Counter.builder("bonfire.rateLimit.rejected")
+                .tag("source", "redis")
+                .description("被限流拒绝的请求数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 从限流对象的令牌桶里取一个令牌
+     *
+     * @param key    限流对象，比如ip:{ip}:{uri}
+     * @param bucket 令牌桶配置
+     * @return 0表示放行，否则为建议的重试等待时长，单位毫秒
+     */
+    public long tryAcquire(String key, BonfireConfig.Bucket bucket) {
+        // 本地时间只用于本地的拒绝记录
+        long now = System.currentTimeMillis();
+        Long until = blockedUntil.getIfPresent(key);
+        if (until != null && until > now) {
+            localRejected.increment();
+            return until - now;
+        }
+        // 每毫秒补充的令牌数
+        double rate = bucket.getRefillPerMinute() / (double) TimeUnit.MINUTES.toMillis(1);
+        Long wait;
+        try {
+            wait = redisUtil.execute(TAKE_TOKEN, new GenericToStringSerializer<>(Long.class),
+                    Collections.singletonList(StrUtil.format(REDIS_KEY_RATE_LIMIT, key)),
+                    bucket.getCapacity(), rate);
+        } catch (Exception e) {
+            log.error("限流检查失败，放行请求，key = {}", key, e);
+            return 0;
+        }
+        if (wait == null || wait <= 0) {
+            return 0;
+        }
+        blockedUntil.put(key, now + wait);
+        redisRejected.increment();
+        return wait;
+    }
+}
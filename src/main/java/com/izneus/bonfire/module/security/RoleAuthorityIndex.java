@@ -0,0 +1,240 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.module.system.entity.SysAuthorityEntity;
+import com.izneus.bonfire.module.system.entity.SysRoleAuthorityEntity;
+import com.izneus.bonfire.module.system.entity.SysRoleEntity;
+import com.izneus.bonfire.module.system.service.SysAuthorityService;
+import com.izneus.bonfire.module.system.service.SysRoleAuthorityService;
+import com.izneus.bonfire.module.system.service.SysRoleService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_CHANNEL_ROLE_AUTHS;
+
+/**
+ * 角色到权限的内存索引，启动时用三次单表查询加载，之后按角色或权限增量更新，
+ * 登录时只需要查用户的角色id，不再每次执行用户、角色、权限的五表关联。
+ * 索引是不可变快照，读不加锁，写时复制后整体替换，
+ * 本节点的变更在事务提交后由AuthorityPropagator调用更新，并通过redis频道通知其他节点从数据库重新加载
+ *
+ * @author Izneus
+ * @date 2021/03/28
+ */
+@Slf4j
+@Component
+public class RoleAuthorityIndex implements MessageListener {
+
+    private static final String SEPARATOR = "|";
+
+    private final SysRoleService roleService;
+    private final SysAuthorityService authorityService;
+    private final SysRoleAuthorityService roleAuthorityService;
+    private final RedisUtil redisUtil;
+    /**
+     * 区分本节点发出的消息
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    public RoleAuthorityIndex(SysRoleService roleService, SysAuthorityService authorityService,
+                              SysRoleAuthorityService roleAuthorityService, RedisUtil redisUtil,
+                              RedisMessageListenerContainer listenerContainer) {
+        this.roleService = roleService;
+        this.authorityService = authorityService;
+        this.roleAuthorityService = roleAuthorityService;
+        this.redisUtil = redisUtil;
+        listenerContainer.addMessageListener(this, new ChannelTopic(REDIS_CHANNEL_ROLE_AUTHS));
+    }
+
+    /**
+     * 全量加载，三张表各查一次
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        Map<String, String> authorities = new HashMap<>();
+        for (SysAuthorityEntity authority : authorityService.list()) {
+            authorities.put(authority.getId(), authority.getAuthority());
+        }
+        Map<String, Set<String>> roleAuthIds = new HashMap<>();
+        for (SysRoleAuthorityEntity roleAuthority : roleAuthorityService.list()) {
+            roleAuthIds.computeIfAbsent(roleAuthority.getRoleId(), k -> new HashSet<>())
+                    .add(roleAuthority.getAuthorityId());
+        }
+        Map<String, Role> roles = new HashMap<>();
+        for (SysRoleEntity role : roleService.list()) {
+            Set<String> authIds = roleAuthIds.getOrDefault(role.getId(), Collections.emptySet());
+            roles.put(role.getId(), new Role(role.getRoleName(), Collections.unmodifiableSet(authIds)));
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(roles), Collections.unmodifiableMap(authorities));
+        log.info("角色权限索引加载完成，角色{}个，权限{}个", roles.size(), authorities.size());
+    }
+
+    /**
+     * 计算一组角色的角色名和权限，格式和redis中user:{id}:auths一致，
+     * 先是ROLE_前缀的角色名，再是去重后的权限，半角逗号分隔
+     *
+     * @param roleIds 用户的角色id
+     * @return 角色和权限字符串，没有任何角色时返回null
+     */
+    public String getAuthString(Collection<String> roleIds) {
+        Snapshot current = snapshot;
+        Set<String> roleNames = new LinkedHashSet<>();
+        Set<String> authorities = new LinkedHashSet<>();
+        for (String roleId : roleIds) {
+            Role role = current.roles.get(roleId);
+            if (role == null) {
+                continue;
+            }
+            roleNames.add("ROLE_" + role.getName());
+            for (String authId : role.getAuthIds()) {
+                String authority = current.authorities.get(authId);
+                if (authority != null) {
+                    authorities.add(authority);
+                }
+            }
+        }
+        if (roleNames.isEmpty()) {
+            return null;
+        }
+        roleNames.addAll(authorities);
+        return String.join(",", roleNames);
+    }
+
+    /**
+     * 拥有某个权限的角色，权限删除后关联已经不在数据库里，只能从索引里找
+     *
+     * @param authId authorityId
+     * @return roleId
+     */
+    public Set<String> getRoleIds(String authId) {
+        Set<String> roleIds = new HashSet<>();
+        for (Map.Entry<String, Role> entry : snapshot.roles.entrySet()) {
+            if (entry.getValue().getAuthIds().contains(authId)) {
+                roleIds.add(entry.getKey());
+            }
+        }
+        return roleIds;
+    }
+
+    /**
+     * 更新本节点索引并通知其他节点，需要在事务提交后调用，
+     * 权限删除时要先找出关联的角色，索引更新后就找不到了
+     *
+     * @param event 变更事件
+     * @return 受影响的角色id
+     */
+    public Set<String> applyChange(AuthorityChangeEvent event) {
+        Set<String> affectedRoleIds;
+        switch (event.getTarget()) {
+            case ROLE:
+                affectedRoleIds = Collections.singleton(event.getId());
+                break;
+            case AUTHORITY:
+                affectedRoleIds = getRoleIds(event.getId());
+                break;
+            default:
+                // 用户角色变更不影响索引
+                return Collections.emptySet();
+        }
+        apply(event.getTarget(), event.getId());
+        redisUtil.publish(REDIS_CHANNEL_ROLE_AUTHS,
+                StrUtil.join(SEPARATOR, nodeId, event.getTarget().name(), event.getId()));
+        return affectedRoleIds;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisUtil.deserialize(message.getBody());
+        if (body == null) {
+            return;
+        }
+        String[] parts = StrUtil.splitToArray(String.valueOf(body), SEPARATOR.charAt(0));
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            apply(AuthorityChangeEvent.Target.valueOf(parts[1]), parts[2]);
+        } catch (Exception e) {
+            // 增量更新失败时全量重建，保证索引和数据库一致
+            log.error("角色权限索引增量更新失败，全量重建，message = {}", body, e);
+            rebuild();
+        }
+    }
+
+    private void apply(AuthorityChangeEvent.Target target, String id) {
+        switch (target) {
+            case ROLE:
+                reloadRole(id);
+                break;
+            case AUTHORITY:
+                reloadAuthority(id);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private synchronized void reloadRole(String roleId) {
+        Map<String, Role> roles = new HashMap<>(snapshot.roles);
+        SysRoleEntity role = roleService.getById(roleId);
+        if (role == null) {
+            roles.remove(roleId);
+        } else {
+            Set<String> authIds = new HashSet<>();
+            for (SysRoleAuthorityEntity roleAuthority : roleAuthorityService.list(
+                    new LambdaQueryWrapper<SysRoleAuthorityEntity>().eq(SysRoleAuthorityEntity::getRoleId, roleId))) {
+                authIds.add(roleAuthority.getAuthorityId());
+            }
+            roles.put(roleId, new Role(role.getRoleName(), Collections.unmodifiableSet(authIds)));
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(roles), snapshot.authorities);
+    }
+
+    private synchronized void reloadAuthority(String authId) {
+        // 角色里只存权限id，权限改名或删除只需要更新权限表部分
+        Map<String, String> authorities = new HashMap<>(snapshot.authorities);
+        SysAuthorityEntity authority = authorityService.getById(authId);
+        if (authority == null) {
+            authorities.remove(authId);
+        } else {
+            authorities.put(authId, authority.getAuthority());
+        }
+        snapshot = new Snapshot(snapshot.roles, Collections.unmodifiableMap(authorities));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Role {
+        private final String name;
+        private final Set<String> authIds;
+    }
+
+    @AllArgsConstructor
+    private static class Snapshot {
+        private final Map<String, Role> roles;
+        /**
+         * authorityId到权限名称
+         */
+        private final Map<String, String> authorities;
+    }
+}
@@ -1,5 +1,6 @@
 package com.izneus.bonfire.module.security;
 
+import com.izneus.bonfire.config.BonfireConfig;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -26,8 +27,10 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     private final JwtFilter jwtFilter;
+    private final RateLimitFilter rateLimitFilter;
     private final JwtAccessDeniedHandler jwtAccessDeniedHandler;
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
+    private final BonfireConfig bonfireConfig;
 
     /*@Bean
     GrantedAuthorityDefaults grantedAuthorityDefaults() {
@@ -37,8 +40,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        // 密码加密方式
-        return new BCryptPasswordEncoder();
+        // 密码加密方式，调高强度后旧密码在用户登录时重新哈希
+        return new BCryptPasswordEncoder(bonfireConfig.getPassword().getStrength());
     }
 
     @Override
@@ -48,6 +51,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .csrf().disable()
                 // 添加jwt过滤器
                 .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+                // 登录、验证码等匿名接口限流，在jwt过滤器之前
+                .addFilterBefore(rateLimitFilter, JwtFilter.class)
                 // 授权异常
                 .exceptionHandling()
                 .authenticationEntryPoint(jwtAuthenticationEntryPoint)
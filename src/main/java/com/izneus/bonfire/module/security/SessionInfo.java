@@ -0,0 +1,39 @@
+package com.izneus.bonfire.module.security;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 一次登录会话，续期后的token沿用jti，仍是同一个会话
+ *
+ * @author Izneus
+ * @date 2021/03/31
+ */
+@Data
+public class SessionInfo {
+    /**
+     * token的jti
+     */
+    private String jti;
+    /**
+     * 登录时间
+     */
+    private Date loginTime;
+    /**
+     * 会话过期时间，续期后延长
+     */
+    private Date expireTime;
+    /**
+     * 登录时的客户端ip
+     */
+    private String clientIp;
+    /**
+     * 登录时的浏览器
+     */
+    private String browser;
+    /**
+     * 登录时的操作系统
+     */
+    private String os;
+}
@@ -0,0 +1,208 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.izneus.bonfire.common.util.RedisUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static com.izneus.bonfire.common.constant.Constant.*;
+
+/**
+ * 用户的登录会话，每个用户一个有序集合，成员为jti，分数为会话过期时间戳，
+ * 同时在线的会话超过jwt.maxSessions时挤掉最早过期的会话，
+ * 鉴权时AuthorityCache在读权限的同一次往返中读出有效的jti，不在集合中的token视为已下线，
+ * 会话的增删都在一个脚本里完成并发布失效消息，不额外增加往返
+ *
+ * @author Izneus
+ * @date 2021/03/31
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionRegistry {
+
+    /**
+     * 清理已过期的会话，加入新会话，超出数量时移除分数最小的会话，再写入权限并通知各节点，返回被挤掉的会话数
+     */
+    private static final RedisScript<Long> REGISTER = new DefaultRedisScript<>(
+            "local function remove(jtis) " +
+                    "if #jtis > 0 then redis.call('ZREM', KEYS[1], unpack(jtis)) " +
+                    "redis.call('HDEL', KEYS[2], unpack(jtis)) end end " +
+                    "remove(redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[3])) " +
+                    "redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1]) " +
+                    "redis.call('HSET', KEYS[2], ARGV[1], ARGV[5]) " +
+                    "local evicted = 0 " +
+                    "local max = tonumber(ARGV[4]) " +
+                    "if max > 0 then " +
+                    "evicted = redis.call('ZCARD', KEYS[1]) - max " +
+                    "if evicted > 0 then remove(redis.call('ZRANGE', KEYS[1], 0, evicted - 1)) else evicted = 0 end " +
+                    "end " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[6]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[6]) " +
+                    "if ARGV[7] == '' then redis.call('DEL', KEYS[3]) " +
+                    "else redis.call('SET', KEYS[3], ARGV[7], 'EX', ARGV[6]) end " +
+                    "redis.call('PUBLISH', ARGV[8], ARGV[9]) " +
+                    "return evicted",
+            Long.class);
+
+    /**
+     * 会话有效时，key不存在则写入新token，并延长会话、会话信息和权限的过期时间，返回key中的值
+     */
+    private static final RedisScript<String> RENEW = new DefaultRedisScript<>(
+            "if not redis.call('ZSCORE', KEYS[3], ARGV[4]) then return false end " +
+                    "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'EX', ARGV[2]) then " +
+                    "redis.call('ZADD', KEYS[3], ARGV[5], ARGV[4]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[3]) " +
+                    "redis.call('EXPIRE', KEYS[3], ARGV[3]) " +
+                    "redis.call('EXPIRE', KEYS[4], ARGV[3]) " +
+                    "return ARGV[1] end " +
+                    "return redis.call('GET', KEYS[1])",
+            String.class);
+
+    /**
+     * 未过期的会话，依次是jti、过期时间戳和会话信息
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> LIST = new DefaultRedisScript<>(
+            "local jtis = redis.call('ZRANGEBYSCORE', KEYS[1], ARGV[1], '+inf', 'WITHSCORES') " +
+                    "local r = {} " +
+                    "for i = 1, #jtis, 2 do " +
+                    "r[#r + 1] = jtis[i] " +
+                    "r[#r + 1] = jtis[i + 1] " +
+                    "r[#r + 1] = redis.call('HGET', KEYS[2], jtis[i]) or '' " +
+                    "end " +
+                    "return r",
+            List.class);
+
+    /**
+     * 移除一个会话并通知各节点
+     */
+    private static final RedisScript<Long> REMOVE = new DefaultRedisScript<>(
+            "local n = redis.call('ZREM', KEYS[1], ARGV[1]) " +
+                    "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+                    "redis.call('PUBLISH', ARGV[2], ARGV[3]) " +
+                    "return n",
+            Long.class);
+
+    /**
+     * 移除全部会话和权限并通知各节点
+     */
+    private static final RedisScript<Long> REMOVE_ALL = new DefaultRedisScript<>(
+            "local n = redis.call('DEL', KEYS[1], KEYS[2], KEYS[3]) " +
+                    "redis.call('PUBLISH', ARGV[1], ARGV[2]) " +
+                    "return n",
+            Long.class);
+
+    private static final RedisSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    private final JwtConfig jwtConfig;
+    private final RedisUtil redisUtil;
+    private final AuthorityCache authorityCache;
+
+    /**
+     * 登录成功后登记会话并写入权限，一次往返完成，超出在线数量时挤掉最早过期的会话
+     *
+     * @param userId     用户id
+     * @param session    会话，jti和过期时间必填
+     * @param authString 角色和权限，半角逗号分隔，没有任何角色时为null
+     */
+    public void register(String userId, SessionInfo session, String authString) {
+        String jti = session.getJti();
+        long now = System.currentTimeMillis();
+        // 会话信息里不重复存jti和过期时间
+        SessionInfo info = new SessionInfo();
+        info.setLoginTime(session.getLoginTime());
+        info.setClientIp(session.getClientIp());
+        info.setBrowser(session.getBrowser());
+        info.setOs(session.getOs());
+        Long evicted = redisUtil.execute(REGISTER, LONG_SERIALIZER, keys(userId),
+                jti, session.getExpireTime().getTime(), now, jwtConfig.getMaxSessions(),
+                JSONUtil.toJsonStr(info), jwtConfig.getExpire(),
+                authString == null ? "" : authString,
+                REDIS_CHANNEL_AUTHS, redisUtil.serialize(userId));
+        authorityCache.evict(userId);
+        if (evicted != null && evicted > 0) {
+            log.info("用户{}在线会话超过{}个，挤掉最早的{}个会话", userId, jwtConfig.getMaxSessions(), evicted);
+        }
+    }
+
+    /**
+     * 会话续期，同一会话并发续期时只有一个请求的新token生效，其他请求拿到同一个新token，
+     * 锁的时长覆盖旧token剩余的续期窗口
+     *
+     * @param userId   用户id
+     * @param jti      会话的jti
+     * @param token    新token
+     * @param expireAt 新token的过期时间戳
+     * @return 续期结果，等于token表示本次续期成功，会话已失效时返回null
+     */
+    String renew(String userId, String jti, String token, long expireAt) {
+        return redisUtil.execute(RENEW, RedisSerializer.string(),
+                Arrays.asList(StrUtil.format(REDIS_KEY_RENEW, jti), StrUtil.format(REDIS_KEY_AUTHS, userId),
+                        StrUtil.format(REDIS_KEY_SESSIONS, userId), StrUtil.format(REDIS_KEY_SESSION_INFO, userId)),
+                token, jwtConfig.getDetect(), jwtConfig.getExpire(), jti, expireAt);
+    }
+
+    /**
+     * 用户当前在线的会话，按过期时间升序
+     *
+     * @param userId 用户id
+     * @return 会话
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<SessionInfo> list(String userId) {
+        List<String> values = redisUtil.execute(LIST,
+                (RedisSerializer<List>) (RedisSerializer<?>) RedisSerializer.string(),
+                keys(userId).subList(0, 2), System.currentTimeMillis());
+        List<SessionInfo> sessions = new ArrayList<>();
+        for (int i = 0; values != null && i + 2 < values.size(); i += 3) {
+            String json = values.get(i + 2);
+            SessionInfo session = StrUtil.isEmpty(json) ? new SessionInfo() : JSONUtil.toBean(json, SessionInfo.class);
+            session.setJti(values.get(i));
+            session.setExpireTime(new Date((long) Double.parseDouble(values.get(i + 1))));
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    /**
+     * 下线一个会话，该会话的token在所有节点上立即失效
+     *
+     * @param userId 用户id
+     * @param jti    会话的jti
+     * @return 会话是否存在
+     */
+    public boolean remove(String userId, String jti) {
+        Long removed = redisUtil.execute(REMOVE, LONG_SERIALIZER, keys(userId).subList(0, 2),
+                jti, REDIS_CHANNEL_AUTHS, redisUtil.serialize(userId));
+        authorityCache.evict(userId);
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * 下线用户的全部会话
+     *
+     * @param userId 用户id
+     */
+    public void removeAll(String userId) {
+        redisUtil.execute(REMOVE_ALL, LONG_SERIALIZER, keys(userId),
+                REDIS_CHANNEL_AUTHS, redisUtil.serialize(userId));
+        authorityCache.evict(userId);
+    }
+
+    private static List<String> keys(String userId) {
+        return Arrays.asList(StrUtil.format(REDIS_KEY_SESSIONS, userId),
+                StrUtil.format(REDIS_KEY_SESSION_INFO, userId), StrUtil.format(REDIS_KEY_AUTHS, userId));
+    }
+}
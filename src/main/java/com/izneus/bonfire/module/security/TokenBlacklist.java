@@ -0,0 +1,188 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.util.StrUtil;
+import com.izneus.bonfire.common.util.RedisUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.izneus.bonfire.common.constant.Constant.*;
+
+/**
+ * 按jti吊销token，redis中每个吊销的jti一个key，过期时间不短于该会话token的剩余寿命，
+ * 每个节点在前面放一个布隆过滤器，绝大多数请求的token没有被吊销，布隆过滤器判断不存在时不访问redis，
+ * 只有判断可能存在时才查redis确认。
+ * 吊销时通过redis频道通知各节点加入过滤器，过滤器定时从黑名单索引全量重建，清除已过期的jti，也补上漏收的消息
+ *
+ * @author Izneus
+ * @date 2021/03/30
+ */
+@Slf4j
+@Component
+public class TokenBlacklist implements MessageListener {
+
+    private final JwtConfig jwtConfig;
+    private final RedisUtil redisUtil;
+    private final Counter redisLookups;
+
+    private volatile BloomFilter current;
+    /**
+     * 重建过程中收到的jti同时写入新过滤器，避免替换时丢失
+     */
+    private volatile BloomFilter building;
+
+    public TokenBlacklist(JwtConfig jwtConfig, RedisUtil redisUtil, RedisMessageListenerContainer listenerContainer,
+                          MeterRegistry meterRegistry) {
+        this.jwtConfig = jwtConfig;
+        this.redisUtil = redisUtil;
+        this.current = newFilter();
+        // 布隆过滤器判断可能存在、需要查redis的次数
+        this.redisLookups = Counter.builder("bonfire.blacklist.redis.lookups")
+                .description("布隆过滤器命中后查询redis黑名单的次数")
+                .register(meterRegistry);
+        listenerContainer.addMessageListener(this, new ChannelTopic(REDIS_CHANNEL_BLACKLIST));
+    }
+
+    /**
+     * 吊销jti，写黑名单、写索引和通知各节点在一次往返中完成，
+     * 写完索引再加入本地过滤器，本节点并发的重建要么读到索引里的jti，要么已经开始重建、加入时同时写入新过滤器
+     *
+     * @param jti token的jti
+     */
+    public void revoke(String jti) {
+        // 续期后的token最长还有expire秒
+        long expireSeconds = jwtConfig.getExpire();
+        long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expireSeconds);
+        redisUtil.pipelined(ops -> {
+            ops.opsForValue().set(StrUtil.format(REDIS_KEY_BLACKLIST, jti), 1, expireSeconds, TimeUnit.SECONDS);
+            ops.opsForZSet().add(REDIS_KEY_BLACKLIST_INDEX, jti, expireAt);
+            ops.convertAndSend(REDIS_CHANNEL_BLACKLIST, jti);
+        });
+        add(jti);
+    }
+
+    /**
+     * jti是否已被吊销
+     *
+     * @param jti token的jti
+     * @return 是否已被吊销
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !current.mightContain(jti)) {
+            return false;
+        }
+        redisLookups.increment();
+        return redisUtil.hasKey(StrUtil.format(REDIS_KEY_BLACKLIST, jti));
+    }
+
+    /**
+     * 从黑名单索引全量重建布隆过滤器，同时清理索引中已过期的jti
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "#{${jwt.blacklistRefreshSeconds:300} * 1000}",
+            fixedDelayString = "#{${jwt.blacklistRefreshSeconds:300} * 1000}")
+    public synchronized void rebuild() {
+        BloomFilter next = newFilter();
+        building = next;
+        try {
+            int count = 0;
+            for (Object jti : redisUtil.zRemoveRangeByScoreAndGetAll(REDIS_KEY_BLACKLIST_INDEX,
+                    Double.NEGATIVE_INFINITY, System.currentTimeMillis())) {
+                next.put(String.valueOf(jti));
+                count++;
+            }
+            current = next;
+            log.debug("token黑名单布隆过滤器重建完成，jti数量：{}", count);
+        } catch (Exception e) {
+            // redis不可用时保留旧过滤器，下次再试
+            log.error("token黑名单布隆过滤器重建失败", e);
+        } finally {
+            building = null;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object jti = redisUtil.deserialize(message.getBody());
+        if (jti != null) {
+            add(String.valueOf(jti));
+        }
+    }
+
+    private void add(String jti) {
+        current.put(jti);
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(jti);
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(jwtConfig.getBlacklistCapacity(), jwtConfig.getBlacklistFpp());
+    }
+
+    /**
+     * 线程安全的布隆过滤器，位数组用AtomicLongArray，k个哈希由两个哈希值组合得到
+     */
+    static class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitSize;
+        private final int hashCount;
+
+        BloomFilter(int capacity, double fpp) {
+            // m = -n * ln(p) / (ln2)^2，k = m / n * ln2
+            long m = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+            this.bitSize = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) m / capacity * Math.log(2)));
+        }
+
+        void put(String value) {
+            int h1 = value.hashCode();
+            int h2 = fnv1a(value);
+            for (int i = 0; i < hashCount; i++) {
+                long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long old;
+                do {
+                    old = bits.get(word);
+                    if ((old & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, old, old | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            int h1 = value.hashCode();
+            int h2 = fnv1a(value);
+            for (int i = 0; i < hashCount; i++) {
+                long index = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int fnv1a(String value) {
+            int hash = 0x811c9dc5;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x01000193;
+            }
+            return hash;
+        }
+    }
+}
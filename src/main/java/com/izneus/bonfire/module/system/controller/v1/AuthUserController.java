@@ -7,10 +7,12 @@ import com.izneus.bonfire.common.base.BasePageVO;
 import com.izneus.bonfire.module.security.CurrentUserUtil;
 import com.izneus.bonfire.module.system.controller.v1.query.ListUserNoticeQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListUserTicketQuery;
+import com.izneus.bonfire.module.system.controller.v1.vo.ExportTaskVO;
 import com.izneus.bonfire.module.system.controller.v1.vo.ListNoticeVO;
 import com.izneus.bonfire.module.system.controller.v1.vo.ListTicketVO;
 import com.izneus.bonfire.module.system.entity.SysNoticeEntity;
 import com.izneus.bonfire.module.system.entity.SysTicketEntity;
+import com.izneus.bonfire.module.system.service.ExportTaskService;
 import com.izneus.bonfire.module.system.service.SysNoticeService;
 import com.izneus.bonfire.module.system.service.SysTicketService;
 import io.swagger.annotations.Api;
@@ -18,9 +20,11 @@ import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.validation.constraints.NotBlank;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -38,6 +42,7 @@ public class AuthUserController {
 
     private final SysNoticeService noticeService;
     private final SysTicketService ticketService;
+    private final ExportTaskService exportTaskService;
 
     @AccessLog("我的通知列表")
     @ApiOperation("我的通知列表")
@@ -52,7 +57,7 @@ public class AuthUserController {
     }
 
     @AccessLog("我的工单")
-    @ApiOperation("我的工单")
+    @ApiOperation("我的工单，支持游标分页")
     @GetMapping("/user/tickets")
     public BasePageVO<ListTicketVO> listTicketsByUserId(@Validated ListUserTicketQuery query) {
         Page<SysTicketEntity> page = ticketService.listTicketsByUserId(query, CurrentUserUtil.getUserId());
@@ -62,4 +67,11 @@ public class AuthUserController {
                 .collect(Collectors.toList());
         return new BasePageVO<>(page, rows);
     }
+
+    @AccessLog("我的导出任务")
+    @ApiOperation("我的导出任务，返回进度，完成后返回下载token")
+    @GetMapping("/user/exports/{taskId}")
+    public ExportTaskVO getExportTask(@NotBlank @PathVariable String taskId) {
+        return exportTaskService.getTask(taskId);
+    }
 }
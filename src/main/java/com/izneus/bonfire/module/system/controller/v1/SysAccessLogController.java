@@ -5,7 +5,9 @@ import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.izneus.bonfire.common.annotation.AccessLog;
 import com.izneus.bonfire.common.base.BasePageVO;
+import com.izneus.bonfire.module.system.controller.v1.query.LatencyQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListAccessLogQuery;
+import com.izneus.bonfire.module.system.controller.v1.vo.LatencyVO;
 import com.izneus.bonfire.module.system.controller.v1.vo.ListAccessLogVO;
 import com.izneus.bonfire.module.system.entity.SysAccessLogEntity;
 import com.izneus.bonfire.module.system.service.SysAccessLogService;
@@ -39,7 +41,7 @@ public class SysAccessLogController {
     private final SysAccessLogService logService;
 
     @AccessLog("访问日志列表")
-    @ApiOperation("访问日志列表")
+    @ApiOperation("访问日志列表，支持游标分页")
     @GetMapping("/accessLogs")
     @PreAuthorize("hasAuthority('sys:accessLogs:list')")
     public BasePageVO<ListAccessLogVO> listUsers(@Validated ListAccessLogQuery query) {
@@ -52,4 +54,14 @@ public class SysAccessLogController {
         return new BasePageVO<>(page, rows);
     }
 
+    @AccessLog("接口耗时统计")
+    @ApiOperation("接口耗时统计，按方法统计p50、p90、p99和最大耗时，按p99倒序")
+    @GetMapping("/accessLogs:latency")
+    @PreAuthorize("hasAuthority('sys:accessLogs:list')")
+    public List<LatencyVO> listLatencies(@Validated LatencyQuery query) {
+        return logService.listLatencies(query).stream()
+                .map(latency -> BeanUtil.copyProperties(latency, LatencyVO.class))
+                .collect(Collectors.toList());
+    }
+
 }
@@ -54,8 +54,7 @@ public class SysAuthorityController {
     @PostMapping("/authorities")
     @PreAuthorize("hasAuthority('sys:authorities:create')")
     public IdVO createAuthority(@Validated @RequestBody AuthQuery authQuery) {
-        SysAuthorityEntity authorityEntity = BeanUtil.copyProperties(authQuery, SysAuthorityEntity.class);
-        String id = authService.save(authorityEntity) ? authorityEntity.getId() : null;
+        String id = authService.createAuthority(authQuery);
         return new IdVO(id);
     }
 
@@ -77,9 +76,7 @@ public class SysAuthorityController {
     @PreAuthorize("hasAuthority('sys:authorities:update')")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void updateAuthorityById(@NotBlank @PathVariable String id, @Validated @RequestBody AuthQuery authQuery) {
-        SysAuthorityEntity authorityEntity = BeanUtil.copyProperties(authQuery, SysAuthorityEntity.class);
-        authorityEntity.setId(id);
-        authService.updateById(authorityEntity);
+        authService.updateAuthorityById(id, authQuery);
     }
 
     @AccessLog("删除权限")
@@ -88,6 +85,6 @@ public class SysAuthorityController {
     @PreAuthorize("hasAuthority('sys:authorities:delete')")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteAuthorityById(@NotBlank @PathVariable String id) {
-        authService.removeById(id);
+        authService.deleteAuthorityById(id);
     }
 }
@@ -11,6 +11,7 @@ import com.izneus.bonfire.module.system.controller.v1.vo.IdVO;
 import com.izneus.bonfire.module.system.controller.v1.vo.ListDictVO;
 import com.izneus.bonfire.module.system.entity.SysDictEntity;
 import com.izneus.bonfire.module.system.service.SysDictService;
+import com.izneus.bonfire.module.system.service.impl.DictIndex;
 import com.izneus.bonfire.module.system.controller.v1.query.DictQuery;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -19,9 +20,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.constraints.NotBlank;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -39,6 +42,7 @@ import java.util.stream.Collectors;
 public class SysDictController {
 
     private final SysDictService dictService;
+    private final DictIndex dictIndex;
 
     @AccessLog("字典列表")
     @ApiOperation("字典列表")
@@ -97,5 +101,35 @@ public class SysDictController {
         return dictService.cacheDicts();
     }
 
+    @AccessLog("按类型获取字典")
+    @ApiOperation("按类型获取字典，返回字典值到字典文本，支持If-None-Match")
+    @GetMapping("/dicts/types/{type}")
+    @PreAuthorize("hasAuthority('sys:dicts:cache')")
+    public Map<String, String> getDictType(@NotBlank @PathVariable String type, WebRequest request) {
+        // 字典没有变化时返回304，前端继续用本地的
+        if (request.checkNotModified(etag())) {
+            return null;
+        }
+        return dictIndex.getType(type);
+    }
+
+    @AccessLog("批量按类型获取字典")
+    @ApiOperation("批量按类型获取字典，返回字典类型到(字典值到字典文本)，支持If-None-Match")
+    @GetMapping("/dicts/types:batchGet")
+    @PreAuthorize("hasAuthority('sys:dicts:cache')")
+    public Map<String, Map<String, String>> batchGetDictTypes(@RequestParam List<String> types, WebRequest request) {
+        if (request.checkNotModified(etag())) {
+            return null;
+        }
+        return dictIndex.getTypes(types);
+    }
+
+    /**
+     * 字典的ETag，所有字典共用一个版本号
+     */
+    private String etag() {
+        return "\"dict-" + dictIndex.getVersion() + "\"";
+    }
+
 
 }
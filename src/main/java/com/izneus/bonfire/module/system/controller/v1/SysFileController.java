@@ -4,25 +4,32 @@ import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.izneus.bonfire.common.annotation.AccessLog;
 import com.izneus.bonfire.common.base.BasePageVO;
+import com.izneus.bonfire.module.system.controller.v1.query.ChunkUploadQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.FileQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListFileQuery;
+import com.izneus.bonfire.module.system.controller.v1.vo.ChunkUploadVO;
 import com.izneus.bonfire.module.system.controller.v1.vo.FileVO;
 import com.izneus.bonfire.module.system.controller.v1.vo.IdVO;
 import com.izneus.bonfire.module.system.controller.v1.vo.ListFileVO;
 import com.izneus.bonfire.module.system.entity.SysFileEntity;
+import com.izneus.bonfire.module.system.service.ChunkUploadService;
 import com.izneus.bonfire.module.system.service.SysFileService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.NotBlank;
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -41,9 +48,10 @@ import java.util.stream.Collectors;
 public class SysFileController {
 
     private final SysFileService fileService;
+    private final ChunkUploadService chunkUploadService;
 
     @AccessLog("文件列表")
-    @ApiOperation("文件列表")
+    @ApiOperation("文件列表，支持游标分页")
     @GetMapping("/files")
     @PreAuthorize("hasAuthority('sys:files:list')")
     public BasePageVO<ListFileVO> listFiles(@Validated ListFileQuery query) {
@@ -98,14 +106,66 @@ public class SysFileController {
         return new IdVO(fileId);
     }
 
+    /**
+     * 大文件分片上传分为3步，初始化上传得到上传id和分片大小，逐个上传分片，全部上传后完成上传得到文件id，
+     * 中断后查询上传信息，只需重传未上传的分片
+     */
+    @AccessLog("初始化分片上传")
+    @ApiOperation("初始化分片上传")
+    @PostMapping("/files/uploads")
+    @PreAuthorize("hasAuthority('sys:files:upload')")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ChunkUploadVO initUpload(@Validated @RequestBody ChunkUploadQuery query) {
+        return chunkUploadService.initUpload(query);
+    }
+
+    @AccessLog("分片上传详情")
+    @ApiOperation("分片上传详情，包括已上传的分片")
+    @GetMapping("/files/uploads/{uploadId}")
+    @PreAuthorize("hasAuthority('sys:files:upload')")
+    public ChunkUploadVO getUpload(@NotBlank @PathVariable String uploadId) {
+        return chunkUploadService.getUpload(uploadId);
+    }
+
+    @AccessLog("上传分片")
+    @ApiOperation("上传分片，请求体为分片内容，Content-MD5为分片内容md5的base64，重复上传同一分片会覆盖")
+    @PutMapping(value = "/files/uploads/{uploadId}/chunks/{index}",
+            consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('sys:files:upload')")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void uploadChunk(@NotBlank @PathVariable String uploadId, @PathVariable int index,
+                            @RequestHeader("Content-MD5") String checksum,
+                            HttpServletRequest request) throws IOException {
+        // 直接读请求体，不经过multipart解析，分片不会先落一次临时文件
+        chunkUploadService.uploadChunk(uploadId, index, checksum, request.getInputStream());
+    }
+
+    @AccessLog("完成分片上传")
+    @ApiOperation("完成分片上传")
+    @PostMapping("/files/uploads/{uploadId}:complete")
+    @PreAuthorize("hasAuthority('sys:files:upload')")
+    public IdVO completeUpload(@NotBlank @PathVariable String uploadId) {
+        String fileId = chunkUploadService.completeUpload(uploadId);
+        return new IdVO(fileId);
+    }
+
+    @AccessLog("取消分片上传")
+    @ApiOperation("取消分片上传")
+    @DeleteMapping("/files/uploads/{uploadId}")
+    @PreAuthorize("hasAuthority('sys:files:upload')")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void abortUpload(@NotBlank @PathVariable String uploadId) {
+        chunkUploadService.abortUpload(uploadId);
+    }
+
     /**
      * 下载文件分为2步，第一步请求返回token，第二步用之前的token，get请求真正的文件
      */
     @AccessLog("下载文件")
-    @ApiOperation("下载文件")
+    @ApiOperation("下载文件，支持Range断点续传和ETag")
     @GetMapping("/files:download")
-    public ResponseEntity<Resource> downloadFile(@NotBlank String token) {
-        return fileService.downloadFile(token);
+    public ResponseEntity<Resource> downloadFile(@NotBlank String token, ServletWebRequest request) {
+        return fileService.downloadFile(token, request);
     }
 
 }
@@ -59,8 +59,7 @@ public class SysRoleController {
     @PreAuthorize("hasAuthority('sys:roles:create')")
     @ResponseStatus(HttpStatus.CREATED)
     public IdVO createRole(@Validated @RequestBody RoleQuery roleQuery) {
-        SysRoleEntity roleEntity = BeanUtil.copyProperties(roleQuery, SysRoleEntity.class);
-        String id = roleService.save(roleEntity) ? roleEntity.getId() : null;
+        String id = roleService.createRole(roleQuery);
         return new IdVO(id);
     }
 
@@ -82,9 +81,7 @@ public class SysRoleController {
     @PreAuthorize("hasAuthority('sys:roles:update')")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void updateRoleById(@NotBlank @PathVariable String id, @Validated @RequestBody RoleQuery roleQuery) {
-        SysRoleEntity roleEntity = BeanUtil.copyProperties(roleQuery, SysRoleEntity.class);
-        roleEntity.setId(id);
-        roleService.updateById(roleEntity);
+        roleService.updateRoleById(id, roleQuery);
     }
 
     @AccessLog("删除角色")
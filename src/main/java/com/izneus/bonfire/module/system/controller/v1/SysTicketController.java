@@ -44,7 +44,7 @@ public class SysTicketController {
     private final SysTicketService ticketService;
 
     @AccessLog("工单列表")
-    @ApiOperation("工单列表")
+    @ApiOperation("工单列表，支持游标分页")
     @GetMapping("/tickets")
     @PreAuthorize("hasAuthority('sys:tickets:list')")
     public BasePageVO<ListTicketVO> listTickets(@Validated ListTicketQuery query) {
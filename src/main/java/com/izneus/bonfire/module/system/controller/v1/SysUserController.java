@@ -1,11 +1,11 @@
 package com.izneus.bonfire.module.system.controller.v1;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.izneus.bonfire.common.annotation.AccessLog;
 import com.izneus.bonfire.common.base.BasePageVO;
 import com.izneus.bonfire.module.security.CurrentUserUtil;
-import com.izneus.bonfire.module.security.JwtUtil;
 import com.izneus.bonfire.module.system.controller.v1.query.IdQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListUserQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.UnlockQuery;
@@ -14,6 +14,7 @@ import com.izneus.bonfire.module.system.controller.v1.vo.*;
 import com.izneus.bonfire.module.system.entity.DsCityEntity;
 import com.izneus.bonfire.module.system.entity.SysUserEntity;
 import com.izneus.bonfire.module.system.service.DsCityService;
+import com.izneus.bonfire.module.system.service.ExportTaskService;
 import com.izneus.bonfire.module.system.service.SysUserService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -24,9 +25,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.constraints.NotBlank;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -44,11 +43,11 @@ import java.util.stream.Collectors;
 public class SysUserController {
 
     private final SysUserService userService;
-    private final JwtUtil jwtUtil;
+    private final ExportTaskService exportTaskService;
     private final DsCityService cityService;
 
     @AccessLog("用户列表")
-    @ApiOperation("用户列表")
+    @ApiOperation("用户列表，支持游标分页")
     @GetMapping("/users")
     @PreAuthorize("hasAuthority('sys:users:list')")
     public BasePageVO<ListUserVO> listUsers(@Validated ListUserQuery query) {
@@ -116,30 +115,26 @@ public class SysUserController {
     }*/
 
     @AccessLog("导出用户")
-    @ApiOperation("导出用户")
+    @ApiOperation("导出用户，异步生成文件，返回任务id，通过 GET /user/exports/{taskId} 查询进度和下载token")
     @PostMapping("/users:export")
     @PreAuthorize("hasAuthority('sys:users:export')")
-    public ExportVO exportUsers(@Validated @RequestBody ListUserQuery query) {
-        String filename = userService.exportUsers(query);
-        Map<String, Object> claims = new HashMap<>(2);
-        claims.put("filename", filename);
-        claims.put("fileType", "1");
-        // 生成文件下载的临时token
-        String token = jwtUtil.createToken(CurrentUserUtil.getUserId(), 5L, claims);
-        return ExportVO.builder()
-                .filename(filename)
-                .token(token)
-                .build();
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public IdVO exportUsers(@Validated @RequestBody ListUserQuery query) {
+        String taskId = exportTaskService.submit("用户", ".xlsx", (filePath, progress) ->
+                StrUtil.format("共导出{}行", userService.exportUsers(query, filePath, progress)));
+        return new IdVO(taskId);
     }
 
     @AccessLog("导入用户")
-    @ApiOperation("导入用户")
+    @ApiOperation("导入用户，异步执行，返回任务id，通过 GET /user/exports/{taskId} 查询进度和导入结果文件的下载token")
     @PostMapping("/users:import")
     @PreAuthorize("hasAuthority('sys:users:import')")
-    public void importUsers(@Validated @RequestBody IdQuery query) {
-        // todo 谨慎开启导入功能
-        // todo 太大的导入文件或是太复杂的导入逻辑，建议调度任务完成，否则会有长时间的执行时间，直观表现就是页面timeout等
-        userService.importUsers(query.getId());
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public IdVO importUsers(@Validated @RequestBody IdQuery query) {
+        // 失败的行写入导入结果文件，不影响其他行
+        String taskId = exportTaskService.submit("用户导入结果", ".xlsx", (filePath, progress) ->
+                userService.importUsers(query.getId(), filePath, progress));
+        return new IdVO(taskId);
     }
 
     /**
@@ -184,6 +179,25 @@ public class SysUserController {
         userService.kickOut(query.getId());
     }
 
+    @AccessLog("用户在线会话")
+    @ApiOperation("用户在线会话")
+    @GetMapping("/users/{userId}/sessions")
+    @PreAuthorize("hasAuthority('sys:users:listSessions')")
+    public List<SessionVO> listSessions(@NotBlank @PathVariable String userId) {
+        return userService.listSessions(userId).stream()
+                .map(session -> BeanUtil.copyProperties(session, SessionVO.class))
+                .collect(Collectors.toList());
+    }
+
+    @AccessLog("下线用户会话")
+    @ApiOperation("下线用户会话")
+    @DeleteMapping("/users/{userId}/sessions/{jti}")
+    @PreAuthorize("hasAuthority('sys:users:kickOut')")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void killSession(@NotBlank @PathVariable String userId, @NotBlank @PathVariable String jti) {
+        userService.killSession(userId, jti);
+    }
+
     /**
      * 测试多数据源
      *
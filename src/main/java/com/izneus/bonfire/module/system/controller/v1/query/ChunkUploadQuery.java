@@ -0,0 +1,27 @@
+package com.izneus.bonfire.module.system.controller.v1.query;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+/**
+ * @author Izneus
+ * @date 2021/04/11
+ */
+@ApiModel("初始化分片上传query")
+@Data
+public class ChunkUploadQuery {
+
+    @ApiModelProperty(value = "文件名", required = true)
+    @NotBlank(message = "文件名不能为空")
+    private String filename;
+
+    @ApiModelProperty(value = "文件大小，单位字节", required = true)
+    @NotNull(message = "文件大小不能为空")
+    @Min(value = 1, message = "文件不能为空")
+    private Long fileSize;
+}
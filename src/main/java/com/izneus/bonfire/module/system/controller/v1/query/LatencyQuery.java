@@ -0,0 +1,31 @@
+package com.izneus.bonfire.module.system.controller.v1.query;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.util.Date;
+
+/**
+ * @author Izneus
+ * @date 2021/03/25
+ */
+@ApiModel("接口耗时统计query")
+@Data
+public class LatencyQuery {
+    @ApiModelProperty("开始时间")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date startTime;
+
+    @ApiModelProperty("结束时间")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date endTime;
+
+    @ApiModelProperty("返回p99最慢的前几个接口，默认20")
+    @Min(value = 1, message = "top最小为1")
+    @Max(value = 500, message = "top最大为500")
+    private Integer top = 20;
+}
@@ -1,5 +1,6 @@
 package com.izneus.bonfire.module.system.controller.v1.query;
 
+import com.izneus.bonfire.common.annotation.Sensitive;
 import com.izneus.bonfire.common.constant.RegExp;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
@@ -22,6 +23,7 @@ public class LoginQuery {
 
     @ApiModelProperty(value = "密码", required = true)
     @Pattern(regexp = RegExp.PASSWORD, message = "密码必须包含小写字母、大写字母和数字，长度为8～16")
+    @Sensitive
     private String password;
 
     @ApiModelProperty(value = "验证码", required = true)
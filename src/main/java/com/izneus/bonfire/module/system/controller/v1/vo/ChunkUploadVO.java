@@ -0,0 +1,38 @@
+package com.izneus.bonfire.module.system.controller.v1.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @author Izneus
+ * @date 2021/04/11
+ */
+@Data
+@ApiModel("分片上传vo")
+public class ChunkUploadVO {
+
+    @ApiModelProperty("上传id")
+    private String id;
+
+    @ApiModelProperty("文件名")
+    private String filename;
+
+    @ApiModelProperty("文件大小，单位字节")
+    private Long fileSize;
+
+    @ApiModelProperty("分片大小，单位字节，第n个分片从n*chunkSize字节开始，最后一个分片可以不足")
+    private Long chunkSize;
+
+    @ApiModelProperty("分片数")
+    private Integer chunkCount;
+
+    @ApiModelProperty("已上传的分片序号，断点续传时只需上传其余分片")
+    private List<Integer> uploadedChunks;
+
+    @ApiModelProperty("创建时间")
+    private Date createTime;
+}
@@ -0,0 +1,43 @@
+package com.izneus.bonfire.module.system.controller.v1.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * @author Izneus
+ * @date 2021/04/08
+ */
+@Data
+@ApiModel("导出任务vo")
+public class ExportTaskVO {
+
+    @ApiModelProperty("任务id")
+    private String id;
+
+    @ApiModelProperty("导出内容")
+    private String name;
+
+    @ApiModelProperty("状态 PENDING|RUNNING|SUCCESS|FAILED")
+    private String status;
+
+    @ApiModelProperty("已处理的行数")
+    private Long rows;
+
+    @ApiModelProperty("文件名")
+    private String filename;
+
+    @ApiModelProperty("结果说明或失败原因")
+    private String message;
+
+    @ApiModelProperty("下载token，任务完成后返回，调用文件下载接口使用")
+    private String token;
+
+    @ApiModelProperty("创建时间")
+    private Date createTime;
+
+    @ApiModelProperty("完成时间")
+    private Date finishTime;
+}
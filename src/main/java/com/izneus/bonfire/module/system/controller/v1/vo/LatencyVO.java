@@ -0,0 +1,31 @@
+package com.izneus.bonfire.module.system.controller.v1.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+/**
+ * @author Izneus
+ * @date 2021/03/25
+ */
+@ApiModel("接口耗时统计VO")
+@Data
+public class LatencyVO {
+    @ApiModelProperty("方法路径")
+    private String method;
+
+    @ApiModelProperty("请求次数")
+    private Long total;
+
+    @ApiModelProperty("p50耗时，单位毫秒")
+    private Long p50;
+
+    @ApiModelProperty("p90耗时，单位毫秒")
+    private Long p90;
+
+    @ApiModelProperty("p99耗时，单位毫秒")
+    private Long p99;
+
+    @ApiModelProperty("最大耗时，单位毫秒")
+    private Long maxTime;
+}
@@ -0,0 +1,33 @@
+package com.izneus.bonfire.module.system.controller.v1.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * @author Izneus
+ * @date 2021/03/31
+ */
+@ApiModel("用户在线会话vo")
+@Data
+public class SessionVO {
+    @ApiModelProperty("会话id，即token的jti")
+    private String jti;
+
+    @ApiModelProperty("登录时间")
+    private Date loginTime;
+
+    @ApiModelProperty("过期时间")
+    private Date expireTime;
+
+    @ApiModelProperty("客户端ip")
+    private String clientIp;
+
+    @ApiModelProperty("浏览器")
+    private String browser;
+
+    @ApiModelProperty("操作系统")
+    private String os;
+}
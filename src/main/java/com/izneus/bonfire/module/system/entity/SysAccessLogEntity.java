@@ -80,11 +80,11 @@ public class SysAccessLogEntity implements Serializable {
     /**
      * 发起请求的用户id
      */
-    @TableField("USER_ID")
-    private String userId;
+    @TableField("CREATE_USER")
+    private String createUser;
 
     /**
-     * 访问经过的时间
+     * 访问经过的时间，单位毫秒
      */
     @TableField("ELAPSED_TIME")
     private Long elapsedTime;
@@ -95,5 +95,11 @@ public class SysAccessLogEntity implements Serializable {
     @TableField("PARAM")
     private String param;
 
+    /**
+     * 备注，请求失败时记录异常类型
+     */
+    @TableField("REMARK")
+    private String remark;
+
 
 }
@@ -1,7 +1,12 @@
 package com.izneus.bonfire.module.system.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.izneus.bonfire.module.system.entity.SysAccessLogEntity;
+import com.izneus.bonfire.module.system.service.dto.LatencyDTO;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
 
 /**
  * <p>
@@ -12,5 +17,14 @@ import com.izneus.bonfire.module.system.entity.SysAccessLogEntity;
  * @since 2020-08-08
  */
 public interface SysAccessLogMapper extends BaseMapper<SysAccessLogEntity> {
-
+    /**
+     * 按方法统计耗时分位数，按p99倒序，取前几条由分页插件按方言生成，不查count
+     *
+     * @param page      只用size，即返回的条数
+     * @param startTime 开始时间
+     * @param endTime   结束时间，可以为空
+     * @return 各方法的耗时分位数
+     */
+    Page<LatencyDTO> listLatencies(@Param("page") Page<LatencyDTO> page,
+                                   @Param("startTime") Date startTime, @Param("endTime") Date endTime);
 }
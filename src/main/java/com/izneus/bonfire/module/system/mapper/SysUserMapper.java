@@ -1,9 +1,12 @@
 package com.izneus.bonfire.module.system.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.izneus.bonfire.module.system.entity.SysUserEntity;
 import com.izneus.bonfire.module.system.service.dto.ListAuthDTO;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -23,4 +26,13 @@ public interface SysUserMapper extends BaseMapper<SysUserEntity> {
      * @return 用户的角色和权限
      */
     List<ListAuthDTO> listAuthsByUserId(@Param("userId") String userId);
+
+    /**
+     * 流式查询导出的用户，按fetchSize分批从数据库取，逐行交给handler，不在内存里攒结果
+     *
+     * @param wrapper 查询条件
+     * @param handler 逐行处理
+     */
+    void exportUsers(@Param(Constants.WRAPPER) Wrapper<SysUserEntity> wrapper,
+                     ResultHandler<SysUserEntity> handler);
 }
@@ -0,0 +1,57 @@
+package com.izneus.bonfire.module.system.service;
+
+import com.izneus.bonfire.module.system.controller.v1.query.ChunkUploadQuery;
+import com.izneus.bonfire.module.system.controller.v1.vo.ChunkUploadVO;
+
+import java.io.InputStream;
+
+/**
+ * 大文件分片上传，客户端按服务端返回的分片大小切分文件，各分片可以并发、乱序、重复上传，
+ * 中断后查询已上传的分片继续上传，全部分片上传后完成上传，得到和普通上传一样的文件记录
+ *
+ * @author Izneus
+ * @date 2021/04/11
+ */
+public interface ChunkUploadService {
+
+    /**
+     * 初始化上传，预分配目标文件
+     *
+     * @param query 文件名和文件大小
+     * @return 上传信息，包括上传id和分片大小
+     */
+    ChunkUploadVO initUpload(ChunkUploadQuery query);
+
+    /**
+     * 查询上传信息和已上传的分片
+     *
+     * @param uploadId 上传id
+     * @return 上传信息
+     */
+    ChunkUploadVO getUpload(String uploadId);
+
+    /**
+     * 上传一个分片，写入目标文件中该分片的位置
+     *
+     * @param uploadId 上传id
+     * @param index    分片序号，从0开始
+     * @param checksum 分片内容md5的base64，即Content-MD5请求头
+     * @param input    分片内容
+     */
+    void uploadChunk(String uploadId, int index, String checksum, InputStream input);
+
+    /**
+     * 完成上传，所有分片都上传后保存文件记录
+     *
+     * @param uploadId 上传id
+     * @return 文件id
+     */
+    String completeUpload(String uploadId);
+
+    /**
+     * 取消上传，删除已上传的内容
+     *
+     * @param uploadId 上传id
+     */
+    void abortUpload(String uploadId);
+}
@@ -0,0 +1,50 @@
+package com.izneus.bonfire.module.system.service;
+
+import com.izneus.bonfire.module.system.controller.v1.vo.ExportTaskVO;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 异步导出，提交后立即返回任务id，由有界线程池生成文件，
+ * 前端轮询任务进度，完成后拿到下载token调用文件下载接口，
+ * 导入这类耗时的任务也可以在这里执行，生成的文件为导入结果
+ *
+ * @author Izneus
+ * @date 2021/04/08
+ */
+public interface ExportTaskService {
+
+    /**
+     * 提交导出任务，当前用户或全局的任务数超过限制时抛出资源不足
+     *
+     * @param name   导出内容，用于展示
+     * @param suffix 文件后缀，如.xlsx
+     * @param task   生成文件的逻辑
+     * @return 任务id
+     */
+    String submit(String name, String suffix, Task task);
+
+    /**
+     * 查询当前用户的导出任务，已完成时签发下载token
+     *
+     * @param taskId 任务id
+     * @return 任务状态
+     */
+    ExportTaskVO getTask(String taskId);
+
+    /**
+     * 生成导出文件
+     */
+    @FunctionalInterface
+    interface Task {
+        /**
+         * 把数据写入文件
+         *
+         * @param filePath 文件路径，在本节点的临时目录，完成后移到共享目录
+         * @param progress 每处理一行回调一次已处理的总行数
+         * @return 任务完成后展示的说明，可以为null
+         * @throws Exception 导出失败
+         */
+        String export(String filePath, LongConsumer progress) throws Exception;
+    }
+}
@@ -2,8 +2,12 @@ package com.izneus.bonfire.module.system.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.izneus.bonfire.module.system.controller.v1.query.LatencyQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListAccessLogQuery;
 import com.izneus.bonfire.module.system.entity.SysAccessLogEntity;
+import com.izneus.bonfire.module.system.service.dto.LatencyDTO;
+
+import java.util.List;
 
 /**
  * <p>
@@ -23,4 +27,12 @@ public interface SysAccessLogService extends IService<SysAccessLogEntity> {
      */
     Page<SysAccessLogEntity> listAccessLogs(ListAccessLogQuery query);
 
+    /**
+     * 按方法统计耗时分位数，不传开始时间时默认统计最近7天
+     *
+     * @param query 查询条件
+     * @return p99最慢的前top个方法
+     */
+    List<LatencyDTO> listLatencies(LatencyQuery query);
+
 }
@@ -2,6 +2,7 @@ package com.izneus.bonfire.module.system.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.izneus.bonfire.module.system.controller.v1.query.AuthQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListAuthQuery;
 import com.izneus.bonfire.module.system.entity.SysAuthorityEntity;
 
@@ -21,4 +22,27 @@ public interface SysAuthorityService extends IService<SysAuthorityEntity> {
      * @return 分页信息
      */
     Page<SysAuthorityEntity> listAuthorities(ListAuthQuery query);
+
+    /**
+     * 新增权限
+     *
+     * @param authQuery 权限信息
+     * @return authorityId
+     */
+    String createAuthority(AuthQuery authQuery);
+
+    /**
+     * 更新权限
+     *
+     * @param id        authorityId
+     * @param authQuery 权限信息
+     */
+    void updateAuthorityById(String id, AuthQuery authQuery);
+
+    /**
+     * 删除权限，同时删除角色和该权限的关联
+     *
+     * @param id authorityId
+     */
+    void deleteAuthorityById(String id);
 }
@@ -6,6 +6,7 @@ import com.izneus.bonfire.module.system.controller.v1.query.ListFileQuery;
 import com.izneus.bonfire.module.system.entity.SysFileEntity;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -34,12 +35,13 @@ public interface SysFileService extends IService<SysFileEntity> {
     String uploadFile(MultipartFile multipartFile);
 
     /**
-     * 下载文件
+     * 下载文件，支持Range分段下载和If-None-Match、If-Modified-Since条件请求
      *
-     * @param token 文件下载2步中第一步生成的token
-     * @return ResponseEntity<Resource>
+     * @param token   文件下载2步中第一步生成的token
+     * @param request 当前请求
+     * @return ResponseEntity<Resource>，文件未修改时返回null，响应已经设置为304
      */
-    ResponseEntity<Resource> downloadFile(String token);
+    ResponseEntity<Resource> downloadFile(String token, ServletWebRequest request);
 
 
 }
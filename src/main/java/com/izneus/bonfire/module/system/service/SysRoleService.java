@@ -3,6 +3,7 @@ package com.izneus.bonfire.module.system.service;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.izneus.bonfire.module.system.controller.v1.query.ListRoleQuery;
+import com.izneus.bonfire.module.system.controller.v1.query.RoleQuery;
 import com.izneus.bonfire.module.system.entity.SysRoleEntity;
 
 import java.util.List;
@@ -24,6 +25,22 @@ public interface SysRoleService extends IService<SysRoleEntity> {
      */
     Page<SysRoleEntity> listRoles(ListRoleQuery query);
 
+    /**
+     * 新增角色
+     *
+     * @param roleQuery 角色信息
+     * @return roleId
+     */
+    String createRole(RoleQuery roleQuery);
+
+    /**
+     * 更新角色
+     *
+     * @param id        roleId
+     * @param roleQuery 角色信息
+     */
+    void updateRoleById(String id, RoleQuery roleQuery);
+
     /**
      * 删除角色
      *
@@ -2,11 +2,15 @@ package com.izneus.bonfire.module.system.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.izneus.bonfire.module.security.SessionInfo;
 import com.izneus.bonfire.module.system.controller.v1.query.ListUserQuery;
 import com.izneus.bonfire.module.system.controller.v1.vo.UserVO;
 import com.izneus.bonfire.module.system.controller.v1.query.UserQuery;
 import com.izneus.bonfire.module.system.entity.SysUserEntity;
 
+import java.util.List;
+import java.util.function.LongConsumer;
+
 /**
  * <p>
  * 系统_用户 服务类
@@ -56,12 +60,14 @@ public interface SysUserService extends IService<SysUserEntity> {
     void removeUserById(String userId);
 
     /**
-     * 导出用户，根据查询条件生成临时文件，返回文件名
+     * 导出用户，把符合查询条件的全部用户写入文件，在导出任务线程中执行
      *
-     * @param query 查询条件
-     * @return 临时文件名
+     * @param query    查询条件
+     * @param filePath 文件路径
+     * @param progress 已写入的行数回调
+     * @return 导出的行数
      */
-    String exportUsers(ListUserQuery query);
+    long exportUsers(ListUserQuery query, String filePath, LongConsumer progress);
 
     /**
      * 重置密码为默认密码
@@ -73,11 +79,14 @@ public interface SysUserService extends IService<SysUserEntity> {
     boolean resetPassword(String userId);
 
     /**
-     * 导入用户，预上传文件获得文件id
+     * 导入用户，预上传文件获得文件id，在导出任务线程中执行，失败的行写入导入结果文件
      *
-     * @param fileId 文件id
+     * @param fileId     文件id
+     * @param reportPath 导入结果文件路径
+     * @param progress   已处理的行数回调
+     * @return 导入结果说明
      */
-    void importUsers(String fileId);
+    String importUsers(String fileId, String reportPath, LongConsumer progress);
 
     /**
      * 删除redis的密码重试k-v来解除登陆时候的密码重试过多的账号锁定
@@ -87,9 +96,25 @@ public interface SysUserService extends IService<SysUserEntity> {
     void unlockUser(String username);
 
     /**
-     * 主动将用户踢下线
+     * 主动将用户踢下线，下线该用户的全部会话
      *
      * @param userId 用户id
      */
     void kickOut(String userId);
+
+    /**
+     * 用户当前在线的会话
+     *
+     * @param userId 用户id
+     * @return 会话
+     */
+    List<SessionInfo> listSessions(String userId);
+
+    /**
+     * 下线用户的一个会话，其他设备上的登录不受影响
+     *
+     * @param userId 用户id
+     * @param jti    会话的jti
+     */
+    void killSession(String userId, String jti);
 }
@@ -0,0 +1,33 @@
+package com.izneus.bonfire.module.system.service.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 分片上传的文件信息，已收到的分片单独存位图
+ *
+ * @author Izneus
+ * @date 2021/04/11
+ */
+@Data
+public class ChunkUploadDTO {
+    private String id;
+    private String userId;
+    /**
+     * 原始文件名
+     */
+    private String filename;
+    /**
+     * 后缀名，无.句号
+     */
+    private String suffix;
+    /**
+     * 上传完成后的文件名，上传过程中写入同名的.part文件
+     */
+    private String uniqueFilename;
+    private Long fileSize;
+    private Long chunkSize;
+    private Integer chunkCount;
+    private Date createTime;
+}
@@ -0,0 +1,43 @@
+package com.izneus.bonfire.module.system.service.dto;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 异步导出任务的状态
+ *
+ * @author Izneus
+ * @date 2021/04/08
+ */
+@Data
+public class ExportTaskDTO {
+    private String id;
+    private String userId;
+    private String name;
+    private Status status;
+    private Long rows;
+    private String filename;
+    private String message;
+    private Date createTime;
+    private Date finishTime;
+
+    public enum Status {
+        /**
+         * 排队中
+         */
+        PENDING,
+        /**
+         * 执行中
+         */
+        RUNNING,
+        /**
+         * 已完成，可以下载
+         */
+        SUCCESS,
+        /**
+         * 失败
+         */
+        FAILED
+    }
+}
@@ -0,0 +1,17 @@
+package com.izneus.bonfire.module.system.service.dto;
+
+import lombok.Data;
+
+/**
+ * @author Izneus
+ * @date 2021/03/25
+ */
+@Data
+public class LatencyDTO {
+    private String method;
+    private Long total;
+    private Long p50;
+    private Long p90;
+    private Long p99;
+    private Long maxTime;
+}
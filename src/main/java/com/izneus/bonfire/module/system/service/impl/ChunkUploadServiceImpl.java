@@ -0,0 +1,240 @@
+package com.izneus.bonfire.module.system.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.Digester;
+import com.izneus.bonfire.common.constant.ErrorCode;
+import com.izneus.bonfire.common.exception.BadRequestException;
+import com.izneus.bonfire.common.util.CommonUtil;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.security.CurrentUserUtil;
+import com.izneus.bonfire.module.system.controller.v1.query.ChunkUploadQuery;
+import com.izneus.bonfire.module.system.controller.v1.vo.ChunkUploadVO;
+import com.izneus.bonfire.module.system.entity.SysFileEntity;
+import com.izneus.bonfire.module.system.service.ChunkUploadService;
+import com.izneus.bonfire.module.system.service.SysFileService;
+import com.izneus.bonfire.module.system.service.dto.ChunkUploadDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_UPLOAD;
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_UPLOAD_CHUNKS;
+
+/**
+ * 分片上传，初始化时在uploadPath下按文件大小预分配一个.part文件，
+ * 每个分片直接按偏移量写入该文件的对应位置，不落分片临时文件，完成时改名即可，不用再合并一遍，
+ * 上传信息和已收到分片的位图写redis，断点续传时查询，每收到一个分片续期，
+ * 超过过期时长没有新分片的.part文件由定时任务删除
+ *
+ * @author Izneus
+ * @date 2021/04/11
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkUploadServiceImpl implements ChunkUploadService {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final BonfireConfig bonfireConfig;
+    private final RedisUtil redisUtil;
+    private final SysFileService fileService;
+
+    @Override
+    public ChunkUploadVO initUpload(ChunkUploadQuery query) {
+        String filename = query.getFilename();
+        if (!CommonUtil.isValidFilename(filename)) {
+            throw new BadRequestException(ErrorCode.INVALID_ARGUMENT, "非法的文件名");
+        }
+        BonfireConfig.BonfireUpload config = bonfireConfig.getUpload();
+        if (query.getFileSize() > config.getMaxFileSize()) {
+            throw new BadRequestException(ErrorCode.INVALID_ARGUMENT, "文件大小超过上限");
+        }
+        ChunkUploadDTO dto = new ChunkUploadDTO();
+        dto.setId(IdUtil.fastSimpleUUID());
+        dto.setUserId(CurrentUserUtil.getUserId());
+        dto.setFilename(filename);
+        dto.setSuffix(FileUtil.getSuffix(filename));
+        dto.setUniqueFilename(IdUtil.fastSimpleUUID() + "." + dto.getSuffix());
+        dto.setFileSize(query.getFileSize());
+        dto.setChunkSize(config.getChunkSize());
+        dto.setChunkCount((int) ((query.getFileSize() + config.getChunkSize() - 1) / config.getChunkSize()));
+        dto.setCreateTime(new Date());
+        // 预分配目标文件，各分片按偏移量写入，大多数文件系统上是稀疏文件，不会先写一遍0
+        File part = FileUtil.touch(partFile(dto));
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            file.setLength(dto.getFileSize());
+        } catch (IOException e) {
+            FileUtil.del(part);
+            log.error("IOException", e);
+            throw new BadRequestException(ErrorCode.INTERNAL, "创建文件失败", e);
+        }
+        redisUtil.set(StrUtil.format(REDIS_KEY_UPLOAD, dto.getId()), dto,
+                TimeUnit.MINUTES.toSeconds(config.getExpireMinutes()));
+        return toVO(dto, new ArrayList<>());
+    }
+
+    @Override
+    public ChunkUploadVO getUpload(String uploadId) {
+        ChunkUploadDTO dto = getDTO(uploadId);
+        byte[] bits = redisUtil.getBits(StrUtil.format(REDIS_KEY_UPLOAD_CHUNKS, uploadId));
+        List<Integer> uploaded = new ArrayList<>();
+        for (int i = 0; i < dto.getChunkCount() && i / 8 < bits.length; i++) {
+            if ((bits[i / 8] & (0x80 >>> (i % 8))) != 0) {
+                uploaded.add(i);
+            }
+        }
+        return toVO(dto, uploaded);
+    }
+
+    @Override
+    public void uploadChunk(String uploadId, int index, String checksum, InputStream input) {
+        ChunkUploadDTO dto = getDTO(uploadId);
+        if (index < 0 || index >= dto.getChunkCount()) {
+            throw new BadRequestException(ErrorCode.INVALID_ARGUMENT, "分片序号错误");
+        }
+        long position = index * dto.getChunkSize();
+        long length = Math.min(dto.getChunkSize(), dto.getFileSize() - position);
+        MessageDigest md5 = new Digester(DigestAlgorithm.MD5).getDigest();
+        // 边读边算md5，请求体直接写到目标文件的对应位置，同一文件的不同分片可以并发写
+        try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(input, md5));
+             FileChannel target = FileChannel.open(partFile(dto).toPath(), StandardOpenOption.WRITE)) {
+            long written = 0;
+            while (written < length) {
+                long count = target.transferFrom(source, position + written, length - written);
+                // 请求体提前结束
+                if (count <= 0) {
+                    break;
+                }
+                written += count;
+            }
+            if (written != length || source.read(ByteBuffer.allocate(1)) != -1) {
+                throw new BadRequestException(ErrorCode.INVALID_ARGUMENT,
+                        StrUtil.format("分片大小错误，应为{}字节", length));
+            }
+        } catch (NoSuchFileException e) {
+            throw new BadRequestException(ErrorCode.NOT_FOUND, "上传不存在或已过期");
+        } catch (IOException e) {
+            log.error("IOException", e);
+            throw new BadRequestException(ErrorCode.INTERNAL, "写入分片失败", e);
+        }
+        // 校验失败时已写入的内容不记录，客户端重传该分片时覆盖
+        if (!MessageDigest.isEqual(Base64.decode(checksum), md5.digest())) {
+            throw new BadRequestException(ErrorCode.INVALID_ARGUMENT, "分片校验失败");
+        }
+        String chunksKey = StrUtil.format(REDIS_KEY_UPLOAD_CHUNKS, uploadId);
+        long expireMinutes = bonfireConfig.getUpload().getExpireMinutes();
+        redisUtil.setBit(chunksKey, index);
+        redisUtil.expire(chunksKey, expireMinutes, TimeUnit.MINUTES);
+        redisUtil.expire(StrUtil.format(REDIS_KEY_UPLOAD, uploadId), expireMinutes, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public String completeUpload(String uploadId) {
+        ChunkUploadDTO dto = getDTO(uploadId);
+        String chunksKey = StrUtil.format(REDIS_KEY_UPLOAD_CHUNKS, uploadId);
+        long uploaded = redisUtil.bitCount(chunksKey);
+        if (uploaded < dto.getChunkCount()) {
+            throw new BadRequestException(ErrorCode.FAILED_PRECONDITION,
+                    StrUtil.format("还有{}个分片未上传", dto.getChunkCount() - uploaded));
+        }
+        // 先删除上传信息，并发的重复完成请求只有一个能继续，之后的分片请求也都返回不存在
+        if (redisUtil.getAndDelete(StrUtil.format(REDIS_KEY_UPLOAD, uploadId)) == null) {
+            throw new BadRequestException(ErrorCode.NOT_FOUND, "上传不存在或已过期");
+        }
+        redisUtil.del(chunksKey);
+        File file = FileUtil.file(bonfireConfig.getPath().getUploadPath(), dto.getUniqueFilename());
+        try {
+            Files.move(partFile(dto).toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("IOException", e);
+            throw new BadRequestException(ErrorCode.INTERNAL, "保存文件失败", e);
+        }
+        // 保存记录到文件表，和普通上传一致
+        SysFileEntity fileEntity = new SysFileEntity();
+        fileEntity.setFilename(dto.getFilename());
+        fileEntity.setUniqueFilename(dto.getUniqueFilename());
+        fileEntity.setSuffix(dto.getSuffix());
+        fileEntity.setPath(File.separator + dto.getUniqueFilename());
+        fileEntity.setFileSize(dto.getFileSize());
+        fileService.save(fileEntity);
+        return fileEntity.getId();
+    }
+
+    @Override
+    public void abortUpload(String uploadId) {
+        ChunkUploadDTO dto = getDTO(uploadId);
+        redisUtil.del(StrUtil.format(REDIS_KEY_UPLOAD, uploadId));
+        redisUtil.del(StrUtil.format(REDIS_KEY_UPLOAD_CHUNKS, uploadId));
+        FileUtil.del(partFile(dto));
+    }
+
+    /**
+     * 删除超过过期时长没有写入的.part文件，分片写入会更新文件的修改时间，和redis里的续期一致
+     */
+    @Scheduled(initialDelay = 600000, fixedDelay = 600000)
+    public void cleanExpiredUploads() {
+        File dir = FileUtil.file(bonfireConfig.getPath().getUploadPath());
+        File[] files = dir.listFiles((d, name) -> name.endsWith(PART_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(bonfireConfig.getUpload().getExpireMinutes());
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() < expireBefore && file.delete()) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("删除过期未完成的上传{}个", count);
+        }
+    }
+
+    private ChunkUploadDTO getDTO(String uploadId) {
+        Object value = redisUtil.get(StrUtil.format(REDIS_KEY_UPLOAD, uploadId));
+        // 只能操作自己的上传
+        if (!(value instanceof ChunkUploadDTO)
+                || !((ChunkUploadDTO) value).getUserId().equals(CurrentUserUtil.getUserId())) {
+            throw new BadRequestException(ErrorCode.NOT_FOUND, "上传不存在或已过期");
+        }
+        return (ChunkUploadDTO) value;
+    }
+
+    private File partFile(ChunkUploadDTO dto) {
+        return FileUtil.file(bonfireConfig.getPath().getUploadPath(), dto.getUniqueFilename() + PART_SUFFIX);
+    }
+
+    private ChunkUploadVO toVO(ChunkUploadDTO dto, List<Integer> uploadedChunks) {
+        ChunkUploadVO vo = BeanUtil.copyProperties(dto, ChunkUploadVO.class);
+        vo.setUploadedChunks(uploadedChunks);
+        return vo;
+    }
+}
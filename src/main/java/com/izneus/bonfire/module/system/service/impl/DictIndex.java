@@ -0,0 +1,150 @@
+package com.izneus.bonfire.module.system.service.impl;
+
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.module.system.entity.SysDictEntity;
+import com.izneus.bonfire.module.system.service.SysDictService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_CHANNEL_DICT;
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_DICT_VERSION;
+
+/**
+ * 字典的内存索引，dictType到(dictValue到dictLabel)，
+ * 带一个全局版本号，字典增删改时版本号加1并通过redis频道通知各节点丢弃索引，下次访问时直接查字典表重建，
+ * 不经过dict缓存，缓存的本地一级由另一个频道失效，和本频道的消息没有先后顺序，重建时可能还是旧值，
+ * 版本号用作字典接口的ETag，前端版本号没变时不需要重新下载
+ *
+ * @author Izneus
+ * @date 2021/04/05
+ */
+@Slf4j
+@Component
+public class DictIndex implements MessageListener {
+
+    private final SysDictService dictService;
+    private final RedisUtil redisUtil;
+
+    private volatile Snapshot snapshot;
+    /**
+     * 收到的最新版本号，索引版本低于它时重建，避免重建过程中收到的变更被覆盖
+     */
+    private volatile long latestVersion;
+
+    public DictIndex(SysDictService dictService, RedisUtil redisUtil,
+                     RedisMessageListenerContainer listenerContainer) {
+        this.dictService = dictService;
+        this.redisUtil = redisUtil;
+        listenerContainer.addMessageListener(this, new ChannelTopic(REDIS_CHANNEL_DICT));
+    }
+
+    /**
+     * 当前版本号
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return current().getVersion();
+    }
+
+    /**
+     * 某个类型的字典
+     *
+     * @param dictType 字典类型
+     * @return dictValue到dictLabel，按字典顺序，类型不存在时为空
+     */
+    public Map<String, String> getType(String dictType) {
+        return current().getTypes().getOrDefault(dictType, Collections.emptyMap());
+    }
+
+    /**
+     * 批量获取多个类型的字典
+     *
+     * @param dictTypes 字典类型
+     * @return dictType到(dictValue到dictLabel)，不存在的类型不返回
+     */
+    public Map<String, Map<String, String>> getTypes(Collection<String> dictTypes) {
+        Map<String, Map<String, String>> types = current().getTypes();
+        Map<String, Map<String, String>> result = new LinkedHashMap<>();
+        for (String dictType : dictTypes) {
+            Map<String, String> values = types.get(dictType);
+            if (values != null) {
+                result.put(dictType, values);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 兜底漏收的变更消息，定时比较redis中的版本号
+     */
+    @Scheduled(initialDelay = 60000, fixedDelay = 60000)
+    public void checkVersion() {
+        Snapshot current = snapshot;
+        if (current != null && current.getVersion() != readVersion()) {
+            snapshot = null;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // 本节点发出的消息也在这里处理
+        Object version = redisUtil.deserialize(message.getBody());
+        if (version instanceof Number) {
+            latestVersion = Math.max(latestVersion, ((Number) version).longValue());
+        }
+        snapshot = null;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null || current.getVersion() < latestVersion) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null || current.getVersion() < latestVersion) {
+                    current = build();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot build() {
+        // 先读版本号再读字典，并发修改时得到的是旧版本号和新数据，下次变更消息会再重建，不会反过来
+        long version = readVersion();
+        Map<String, Map<String, String>> types = new LinkedHashMap<>();
+        // 只在字典变更后重建，直接查库，避免读到本节点还没失效的一级缓存后打上新版本号
+        for (SysDictEntity dict : dictService.list()) {
+            types.computeIfAbsent(dict.getDictType(), k -> new LinkedHashMap<>())
+                    .put(dict.getDictValue(), dict.getDictLabel());
+        }
+        types.replaceAll((k, v) -> Collections.unmodifiableMap(v));
+        log.debug("字典索引重建完成，版本{}，类型{}个", version, types.size());
+        return new Snapshot(version, Collections.unmodifiableMap(types));
+    }
+
+    private long readVersion() {
+        String version = redisUtil.getString(REDIS_KEY_DICT_VERSION);
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Snapshot {
+        private final long version;
+        private final Map<String, Map<String, String>> types;
+    }
+}
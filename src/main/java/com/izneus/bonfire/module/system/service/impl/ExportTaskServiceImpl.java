@@ -0,0 +1,239 @@
+package com.izneus.bonfire.module.system.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.izneus.bonfire.common.constant.ErrorCode;
+import com.izneus.bonfire.common.exception.BadRequestException;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.security.CurrentUserUtil;
+import com.izneus.bonfire.module.security.JwtUtil;
+import com.izneus.bonfire.module.system.controller.v1.vo.ExportTaskVO;
+import com.izneus.bonfire.module.system.service.ExportTaskService;
+import com.izneus.bonfire.module.system.service.dto.ExportTaskDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.izneus.bonfire.common.constant.Constant.EXPORT_DIR;
+import static com.izneus.bonfire.common.constant.Constant.EXPORT_FILE;
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_EXPORT_TASK;
+
+/**
+ * 异步导出，任务状态写redis，任意节点都能查询，文件先写在执行任务节点的tempPath下，
+ * 完成后移到共享的uploadPath下的export目录，下载请求落在任意节点都能读到，
+ * 全局并发由线程池大小和队列长度限制，单个用户的并发在本节点内限制，
+ * 导出文件超过保留时长后定时删除，下载过的和没人下载的都一样
+ *
+ * @author Izneus
+ * @date 2021/04/08
+ */
+@Slf4j
+@Service
+public class ExportTaskServiceImpl implements ExportTaskService {
+
+    /**
+     * 进度写redis的最小间隔，避免每行都写一次
+     */
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    private final BonfireConfig bonfireConfig;
+    private final RedisUtil redisUtil;
+    private final JwtUtil jwtUtil;
+    private final ThreadPoolExecutor executor;
+    /**
+     * 用户id到排队和执行中的任务数
+     */
+    private final ConcurrentMap<String, Integer> userTasks = new ConcurrentHashMap<>();
+
+    public ExportTaskServiceImpl(BonfireConfig bonfireConfig, RedisUtil redisUtil, JwtUtil jwtUtil,
+                                 MeterRegistry meterRegistry) {
+        this.bonfireConfig = bonfireConfig;
+        this.redisUtil = redisUtil;
+        this.jwtUtil = jwtUtil;
+        BonfireConfig.BonfireExport config = bonfireConfig.getExport();
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                new NamedThreadFactory("export-task-", true),
+                new ThreadPoolExecutor.AbortPolicy());
+        // 线程池排队、拒绝等指标，见/actuator/metrics/executor.queued
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "exportTask");
+    }
+
+    @Override
+    public String submit(String name, String suffix, Task task) {
+        String userId = CurrentUserUtil.getUserId();
+        if (!acquire(userId)) {
+            throw new BadRequestException(ErrorCode.RESOURCE_EXHAUSTED, "导出任务过多，请等待之前的任务完成");
+        }
+        ExportTaskDTO dto = new ExportTaskDTO();
+        dto.setId(IdUtil.fastSimpleUUID());
+        dto.setUserId(userId);
+        dto.setName(name);
+        dto.setStatus(ExportTaskDTO.Status.PENDING);
+        dto.setRows(0L);
+        dto.setFilename(dto.getId() + suffix);
+        dto.setCreateTime(new Date());
+        // 没能交给线程池时由这里释放名额，包括写redis失败
+        boolean submitted = false;
+        try {
+            save(dto);
+            // 带上提交人的认证信息，写库时自动填充创建人
+            executor.execute(new DelegatingSecurityContextRunnable(() -> run(dto, task)));
+            submitted = true;
+        } catch (RejectedExecutionException e) {
+            redisUtil.del(StrUtil.format(REDIS_KEY_EXPORT_TASK, dto.getId()));
+            throw new BadRequestException(ErrorCode.RESOURCE_EXHAUSTED, "导出任务排队已满，请稍后重试");
+        } finally {
+            if (!submitted) {
+                release(userId);
+            }
+        }
+        return dto.getId();
+    }
+
+    @Override
+    public ExportTaskVO getTask(String taskId) {
+        Object value = redisUtil.get(StrUtil.format(REDIS_KEY_EXPORT_TASK, taskId));
+        // 只能查询自己的任务
+        if (!(value instanceof ExportTaskDTO)
+                || !((ExportTaskDTO) value).getUserId().equals(CurrentUserUtil.getUserId())) {
+            throw new BadRequestException(ErrorCode.NOT_FOUND, "导出任务不存在或已过期");
+        }
+        ExportTaskDTO dto = (ExportTaskDTO) value;
+        ExportTaskVO vo = BeanUtil.copyProperties(dto, ExportTaskVO.class, "status");
+        vo.setStatus(dto.getStatus().name());
+        if (dto.getStatus() == ExportTaskDTO.Status.SUCCESS) {
+            // 完成后才签发token，大文件生成期间不会过期
+            Map<String, Object> claims = new HashMap<>(2);
+            claims.put("filename", dto.getFilename());
+            claims.put("fileType", EXPORT_FILE);
+            vo.setToken(jwtUtil.createToken(dto.getUserId(),
+                    bonfireConfig.getExport().getDownloadTokenSeconds(), claims));
+        }
+        return vo;
+    }
+
+    /**
+     * 删除超过保留时长的导出文件，以及节点异常退出时留在tempPath下没写完的文件，
+     * 共享目录每个节点都会清理，删除失败说明已经被其他节点删除
+     */
+    @Scheduled(initialDelay = 600000, fixedDelay = 600000)
+    public void cleanTempFiles() {
+        long expireBefore = System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(bonfireConfig.getExport().getTempFileTtlMinutes());
+        int count = deleteExpired(FileUtil.file(exportPath()), expireBefore)
+                + deleteExpired(FileUtil.file(bonfireConfig.getPath().getTempPath()), expireBefore);
+        if (count > 0) {
+            log.info("删除过期导出文件{}个", count);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ExportTaskDTO dto, Task task) {
+        String filePath = bonfireConfig.getPath().getTempPath() + File.separator + dto.getFilename();
+        try {
+            execute(dto, task, filePath);
+        } finally {
+            // 写redis失败也要释放名额
+            release(dto.getUserId());
+        }
+    }
+
+    private void execute(ExportTaskDTO dto, Task task, String filePath) {
+        try {
+            dto.setStatus(ExportTaskDTO.Status.RUNNING);
+            save(dto);
+            long[] lastSaved = {System.currentTimeMillis()};
+            String message = task.export(filePath, rows -> {
+                dto.setRows(rows);
+                long now = System.currentTimeMillis();
+                if (now - lastSaved[0] >= PROGRESS_INTERVAL_MILLIS) {
+                    lastSaved[0] = now;
+                    save(dto);
+                }
+            });
+            // 写完再移到共享目录，其他节点不会读到写了一半的文件
+            File exportFile = FileUtil.file(exportPath(), dto.getFilename());
+            FileUtil.mkParentDirs(exportFile);
+            Files.move(FileUtil.file(filePath).toPath(), exportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dto.setStatus(ExportTaskDTO.Status.SUCCESS);
+            dto.setMessage(message);
+        } catch (Exception e) {
+            log.error("导出任务{}失败", dto.getId(), e);
+            FileUtil.del(filePath);
+            FileUtil.del(FileUtil.file(exportPath(), dto.getFilename()));
+            dto.setStatus(ExportTaskDTO.Status.FAILED);
+            dto.setMessage("导出失败");
+        } finally {
+            dto.setFinishTime(new Date());
+            save(dto);
+        }
+    }
+
+    private String exportPath() {
+        return bonfireConfig.getPath().getUploadPath() + File.separator + EXPORT_DIR;
+    }
+
+    private int deleteExpired(File dir, long expireBefore) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() < expireBefore && file.delete()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void save(ExportTaskDTO dto) {
+        redisUtil.set(StrUtil.format(REDIS_KEY_EXPORT_TASK, dto.getId()), dto,
+                TimeUnit.MINUTES.toSeconds(bonfireConfig.getExport().getTempFileTtlMinutes()));
+    }
+
+    private boolean acquire(String userId) {
+        int max = bonfireConfig.getExport().getMaxPerUser();
+        boolean[] acquired = {false};
+        userTasks.compute(userId, (k, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= max) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(String userId) {
+        userTasks.computeIfPresent(userId, (k, count) -> count <= 1 ? null : count - 1);
+    }
+}
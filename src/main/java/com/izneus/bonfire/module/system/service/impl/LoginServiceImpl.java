@@ -2,31 +2,39 @@ package com.izneus.bonfire.module.system.service.impl;
 
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.extra.servlet.ServletUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.izneus.bonfire.common.aspect.UserAgentCache;
 import com.izneus.bonfire.common.constant.Dict;
 import com.izneus.bonfire.common.constant.ErrorCode;
 import com.izneus.bonfire.common.exception.BadRequestException;
+import com.izneus.bonfire.common.exception.RateLimitException;
+import com.izneus.bonfire.common.util.HttpContextUtil;
 import com.izneus.bonfire.common.util.RedisUtil;
 import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.security.CaptchaPool;
 import com.izneus.bonfire.module.security.CurrentUserUtil;
 import com.izneus.bonfire.module.security.JwtUtil;
+import com.izneus.bonfire.module.security.PasswordHasher;
+import com.izneus.bonfire.module.security.RateLimiter;
+import com.izneus.bonfire.module.security.RoleAuthorityIndex;
+import com.izneus.bonfire.module.security.SessionInfo;
+import com.izneus.bonfire.module.security.SessionRegistry;
 import com.izneus.bonfire.module.system.controller.v1.query.LoginQuery;
 import com.izneus.bonfire.module.system.controller.v1.vo.CaptchaVO;
 import com.izneus.bonfire.module.system.controller.v1.vo.LoginVO;
 import com.izneus.bonfire.module.system.entity.SysUserEntity;
-import com.izneus.bonfire.module.system.mapper.SysUserMapper;
+import com.izneus.bonfire.module.system.entity.SysUserRoleEntity;
 import com.izneus.bonfire.module.system.service.LoginService;
+import com.izneus.bonfire.module.system.service.SysUserRoleService;
 import com.izneus.bonfire.module.system.service.SysUserService;
-import com.izneus.bonfire.module.system.service.dto.ListAuthDTO;
-import com.wf.captcha.ArithmeticCaptcha;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.List;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -44,26 +52,46 @@ public class LoginServiceImpl implements LoginService {
     private final JwtUtil jwtUtil;
     private final RedisUtil redisUtil;
     private final SysUserService userService;
-
-    @Value("${jwt.expire}")
-    private Long jwtExpire;
+    private final SessionRegistry sessionRegistry;
+    private final UserAgentCache userAgentCache;
+    private final PasswordHasher passwordHasher;
+    private final SysUserRoleService userRoleService;
+    private final RoleAuthorityIndex roleAuthorityIndex;
+    private final CaptchaPool captchaPool;
+    private final RateLimiter rateLimiter;
 
     @Override
     public LoginVO login(LoginQuery loginQuery) {
-        // 登陆密码重试锁定功能, 检查连续密码输入错误次数
+        // 按用户名限流，防止同一账号被大量ip轮流尝试，按ip的限流在RateLimitFilter
+        BonfireConfig.BonfireRateLimit rateLimit = bonfireConfig.getRateLimit();
+        if (rateLimit.getEnabled()) {
+            long wait = rateLimiter.tryAcquire("username:" + loginQuery.getUsername(), rateLimit.getUsername());
+            if (wait > 0) {
+                throw new RateLimitException("该用户登录过于频繁，请稍后重试", TimeUnit.MILLISECONDS.toSeconds(wait + 999));
+            }
+        }
+
+        // 登陆密码重试锁定功能, 检查连续密码输入错误次数，同时取出验证码，一次往返
         String retryKey = StrUtil.format(REDIS_KEY_LOGIN_RETRY, loginQuery.getUsername());
-        int retryCount = (int) Optional.ofNullable(redisUtil.get(retryKey)).orElse(0);
+        String retry;
+        String captcha = null;
+        if (bonfireConfig.getCaptchaEnabled()) {
+            // 查询过的验证码及时清除
+            String captchaKey = StrUtil.format(REDIS_KEY_CAPTCHA, loginQuery.getCaptchaId());
+            List<String> values = redisUtil.getWithGetAndDelete(retryKey, captchaKey);
+            retry = values.get(0);
+            captcha = values.get(1);
+        } else {
+            retry = redisUtil.getString(retryKey);
+        }
+        // 重试次数由INCR写入，按字符串读出
+        int retryCount = retry == null ? 0 : Integer.parseInt(retry);
         if (retryCount >= MAX_RETRY_COUNT) {
             throw new BadRequestException(ErrorCode.PERMISSION_DENIED,
                     "因连续密码输入错误，该用户已被锁定，请30分钟之后重试");
         }
 
         if (bonfireConfig.getCaptchaEnabled()) {
-            // 查询验证码
-            String key = StrUtil.format(REDIS_KEY_CAPTCHA, loginQuery.getCaptchaId());
-            String captcha = (String) redisUtil.get(key);
-            // 查询过的验证码及时清除
-            redisUtil.del(key);
             if (!StringUtils.hasText(captcha)) {
                 throw new BadRequestException(ErrorCode.INVALID_ARGUMENT, "验证码已过期");
             }
@@ -87,25 +115,27 @@ public class LoginServiceImpl implements LoginService {
             throw new BadRequestException(ErrorCode.UNAUTHENTICATED, "用户名不存在或密码错误");
         }
         // 账号状态
-        if (user.getStatus() == null || !user.getStatus().equals(Dict.UserStatus.OK.getCode())) {
+        if (Dict.UserStatus.of(user.getStatus()) != Dict.UserStatus.OK) {
             throw new BadRequestException(ErrorCode.PERMISSION_DENIED, "账号异常已被锁定，请联系系统管理员");
         }
         // 校验密码
-        if (!new BCryptPasswordEncoder().matches(loginQuery.getPassword(), user.getPassword())) {
-            if (0 == retryCount) {
-                // 首次输错密码，开始计时5分钟
-                redisUtil.set(retryKey, 0, 5, TimeUnit.MINUTES);
-            }
-            // 密码错误，累计错误次数
-            Long totalRetryCount = redisUtil.incr(retryKey);
-            if (totalRetryCount >= MAX_RETRY_COUNT) {
-                // 5分钟内连续输错5次密码，锁定账号30分钟
-                redisUtil.expire(retryKey, 30, TimeUnit.MINUTES);
-            }
+        if (!passwordHasher.matches(loginQuery.getPassword(), user.getPassword())) {
+            // 密码错误，累计错误次数，首次输错密码开始计时5分钟，
+            // 5分钟内连续输错5次密码，锁定账号30分钟
+            Long totalRetryCount = redisUtil.incr(retryKey, TimeUnit.MINUTES.toSeconds(5), MAX_RETRY_COUNT,
+                    TimeUnit.MINUTES.toSeconds(30));
             throw new BadRequestException(ErrorCode.UNAUTHENTICATED,
                     "用户名不存在或密码错误，密码错误次数：" + totalRetryCount);
         }
 
+        // 密码哈希强度低于当前配置时，借登录拿到的明文重新哈希
+        if (passwordHasher.upgradeEncoding(user.getPassword())) {
+            SysUserEntity upgradeEntity = new SysUserEntity();
+            upgradeEntity.setId(user.getId());
+            upgradeEntity.setPassword(passwordHasher.encode(loginQuery.getPassword()));
+            userService.updateById(upgradeEntity);
+        }
+
         /// 暂时停用，生成spring-security认证信息
         /*SecurityUser securityUser = new SecurityUser(user.getId(), user.getUsername(),
                 user.getPassword(), Collections.emptyList());
@@ -113,21 +143,28 @@ public class LoginServiceImpl implements LoginService {
                 null, null);
         SecurityContextHolder.getContext().setAuthentication(authentication);*/
 
-        // 登录成功，生成jwt
-        String token = jwtUtil.createToken(user.getId());
-
-        // 保存权限到redis
-        List<ListAuthDTO> authorityList = ((SysUserMapper) userService.getBaseMapper()).listAuthsByUserId(user.getId());
-        if (authorityList != null && authorityList.size() > 0) {
-            // 取角色和权限，拼接成一个字符串，用半角逗号分隔
-            String roles = authorityList.stream().map(i -> "ROLE_" + i.getRoleName()).distinct()
-                    .collect(Collectors.joining(","));
-            String auths = authorityList.stream().map(ListAuthDTO::getAuthority).distinct()
-                    .collect(Collectors.joining(","));
-            String key = StrUtil.format(REDIS_KEY_AUTHS, user.getId());
-            redisUtil.set(key, roles + "," + auths, jwtExpire, TimeUnit.SECONDS);
-        }
-        // todo single login
+        // 登录成功，生成jwt，jti即本次登录会话的标识
+        String token = jwtUtil.createToken(user.getId(), user.getUsername());
+        Claims claims = jwtUtil.getClaims(token);
+
+        // 保存权限到redis，只查用户的角色，角色对应的权限从内存索引获得
+        List<String> roleIds = userRoleService.list(new LambdaQueryWrapper<SysUserRoleEntity>()
+                .select(SysUserRoleEntity::getRoleId)
+                .eq(SysUserRoleEntity::getUserId, user.getId()))
+                .stream().map(SysUserRoleEntity::getRoleId).collect(Collectors.toList());
+        // 取角色和权限，拼接成一个字符串，用半角逗号分隔
+        String authString = roleAuthorityIndex.getAuthString(roleIds);
+        // 登记会话，超出在线设备数时挤掉最早的会话，和写权限、通知各节点重新加载在一次往返中完成
+        HttpServletRequest request = HttpContextUtil.getHttpServletRequest();
+        UserAgentCache.Client client = userAgentCache.get(request.getHeader("User-Agent"));
+        SessionInfo session = new SessionInfo();
+        session.setJti(claims.getId());
+        session.setLoginTime(claims.getIssuedAt());
+        session.setExpireTime(claims.getExpiration());
+        session.setClientIp(ServletUtil.getClientIP(request));
+        session.setBrowser(client.getBrowser());
+        session.setOs(client.getOs());
+        sessionRegistry.register(user.getId(), session, authString);
         return LoginVO.builder()
                 .username(user.getUsername())
                 .token(token)
@@ -136,32 +173,24 @@ public class LoginServiceImpl implements LoginService {
 
     @Override
     public CaptchaVO getCaptcha() {
-        /// 图片验证码
-        /*SpecCaptcha specCaptcha = new SpecCaptcha(130, 48, 5);
-        String value = specCaptcha.text().toLowerCase();*/
-
-        // 算术验证码
-        ArithmeticCaptcha captcha = new ArithmeticCaptcha(130, 48);
-        String value = captcha.text();
+        // 从预先生成的验证码池取出，不在请求线程上画图
+        CaptchaPool.Captcha captcha = captchaPool.take();
 
         String uuid = IdUtil.fastSimpleUUID();
         String key = StrUtil.format(REDIS_KEY_CAPTCHA, uuid);
         // 保存验证码到redis缓存，2分钟后过期
-        redisUtil.set(key, value, 2L, TimeUnit.MINUTES);
+        redisUtil.setString(key, captcha.getText(), TimeUnit.MINUTES.toSeconds(2));
         return CaptchaVO.builder()
                 .id(uuid)
-                .captcha(captcha.toBase64())
+                .captcha(captcha.getImage())
                 .build();
     }
 
     @Override
     public void logout() {
-        // 删除白名单
-        String key = StrUtil.format(REDIS_KEY_AUTHS, CurrentUserUtil.getUserId());
-        redisUtil.del(key);
-
-        /// 黑名单机制
-        /*String key = StrUtil.format(REDIS_KEY_BLACKLIST, token);
-        redisUtil.set(key, null, jwtExpire, TimeUnit.SECONDS);*/
+        // 只下线当前会话，用户在其他设备上的登录不受影响，同时吊销jti，各节点本地即可拦截
+        Claims claims = jwtUtil.getClaims(CurrentUserUtil.getToken());
+        sessionRegistry.remove(claims.getSubject(), claims.getId());
+        jwtUtil.revokeToken(CurrentUserUtil.getToken());
     }
 }
@@ -1,14 +1,21 @@
 package com.izneus.bonfire.module.system.service.impl;
 
+import cn.hutool.core.date.DateUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.izneus.bonfire.common.base.CursorPage;
+import com.izneus.bonfire.module.system.controller.v1.query.LatencyQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListAccessLogQuery;
 import com.izneus.bonfire.module.system.entity.SysAccessLogEntity;
 import com.izneus.bonfire.module.system.mapper.SysAccessLogMapper;
 import com.izneus.bonfire.module.system.service.SysAccessLogService;
+import com.izneus.bonfire.module.system.service.dto.LatencyDTO;
 import org.springframework.stereotype.Service;
 
+import java.util.Date;
+import java.util.List;
+
 /**
  * <p>
  * 系统_访问日志 服务实现类
@@ -23,14 +30,25 @@ public class SysAccessLogServiceImpl extends ServiceImpl<SysAccessLogMapper, Sys
 
     @Override
     public Page<SysAccessLogEntity> listAccessLogs(ListAccessLogQuery query) {
-        return page(
-                new Page<>(query.getPageNum(), query.getPageSize()),
-                new LambdaQueryWrapper<SysAccessLogEntity>()
-                        .ge(SysAccessLogEntity::getCreateTime, query.getStartTime())
-                        .le(SysAccessLogEntity::getCreateTime, query.getEndTime())
-                        .eq(SysAccessLogEntity::getClientIp, query.getClientIp())
-                        .orderByDesc(SysAccessLogEntity::getCreateTime)
-        );
+        LambdaQueryWrapper<SysAccessLogEntity> wrapper = new LambdaQueryWrapper<SysAccessLogEntity>()
+                .ge(SysAccessLogEntity::getCreateTime, query.getStartTime())
+                .le(SysAccessLogEntity::getCreateTime, query.getEndTime())
+                .eq(SysAccessLogEntity::getClientIp, query.getClientIp());
+        // 日志表数据量大，深翻页用游标
+        if (CursorPage.isRequested(query)) {
+            return CursorPage.seek(this, query, wrapper, SysAccessLogEntity::getCreateTime, SysAccessLogEntity::getId);
+        }
+        return page(new Page<>(query.getPageNum(), query.getPageSize()),
+                wrapper.orderByDesc(SysAccessLogEntity::getCreateTime));
+
+    }
 
+    @Override
+    public List<LatencyDTO> listLatencies(LatencyQuery query) {
+        // 避免全表统计，默认统计最近7天
+        Date startTime = query.getStartTime() != null
+                ? query.getStartTime() : DateUtil.offsetDay(DateUtil.date(), -7);
+        return baseMapper.listLatencies(new Page<>(1, query.getTop(), false), startTime, query.getEndTime())
+                .getRecords();
     }
 }
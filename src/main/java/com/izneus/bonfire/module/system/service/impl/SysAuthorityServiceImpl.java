@@ -1,14 +1,22 @@
 package com.izneus.bonfire.module.system.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.izneus.bonfire.module.security.AuthorityChangeEvent;
+import com.izneus.bonfire.module.system.controller.v1.query.AuthQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListAuthQuery;
 import com.izneus.bonfire.module.system.entity.SysAuthorityEntity;
+import com.izneus.bonfire.module.system.entity.SysRoleAuthorityEntity;
 import com.izneus.bonfire.module.system.mapper.SysAuthorityMapper;
 import com.izneus.bonfire.module.system.service.SysAuthorityService;
+import com.izneus.bonfire.module.system.service.SysRoleAuthorityService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * <p>
@@ -19,9 +27,13 @@ import org.springframework.stereotype.Service;
  * @since 2020-08-10
  */
 @Service
+@RequiredArgsConstructor
 public class SysAuthorityServiceImpl extends ServiceImpl<SysAuthorityMapper, SysAuthorityEntity>
         implements SysAuthorityService {
 
+    private final SysRoleAuthorityService roleAuthorityService;
+    private final ApplicationEventPublisher eventPublisher;
+
     @Override
     public Page<SysAuthorityEntity> listAuthorities(ListAuthQuery query) {
         return page(
@@ -37,4 +49,35 @@ public class SysAuthorityServiceImpl extends ServiceImpl<SysAuthorityMapper, Sys
 
         );
     }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public String createAuthority(AuthQuery authQuery) {
+        SysAuthorityEntity authorityEntity = BeanUtil.copyProperties(authQuery, SysAuthorityEntity.class);
+        if (!save(authorityEntity)) {
+            return null;
+        }
+        eventPublisher.publishEvent(
+                new AuthorityChangeEvent(AuthorityChangeEvent.Target.AUTHORITY, authorityEntity.getId()));
+        return authorityEntity.getId();
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void updateAuthorityById(String id, AuthQuery authQuery) {
+        SysAuthorityEntity authorityEntity = BeanUtil.copyProperties(authQuery, SysAuthorityEntity.class);
+        authorityEntity.setId(id);
+        updateById(authorityEntity);
+        eventPublisher.publishEvent(new AuthorityChangeEvent(AuthorityChangeEvent.Target.AUTHORITY, id));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void deleteAuthorityById(String id) {
+        removeById(id);
+        // 删除角色和该权限的关联，避免留下无效数据
+        roleAuthorityService.remove(new LambdaQueryWrapper<SysRoleAuthorityEntity>()
+                .eq(SysRoleAuthorityEntity::getAuthorityId, id));
+        eventPublisher.publishEvent(new AuthorityChangeEvent(AuthorityChangeEvent.Target.AUTHORITY, id));
+    }
 }
@@ -4,14 +4,17 @@ import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.izneus.bonfire.common.util.RedisUtil;
 import com.izneus.bonfire.module.system.controller.v1.query.DictQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListDictQuery;
 import com.izneus.bonfire.module.system.controller.v1.vo.CacheDictVO;
 import com.izneus.bonfire.module.system.entity.SysDictEntity;
 import com.izneus.bonfire.module.system.mapper.SysDictMapper;
 import com.izneus.bonfire.module.system.service.SysDictService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -19,6 +22,9 @@ import org.springframework.util.StringUtils;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static com.izneus.bonfire.common.constant.Constant.REDIS_CHANNEL_DICT;
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_DICT_VERSION;
+
 /**
  * <p>
  * 系统_字典 服务实现类
@@ -28,9 +34,16 @@ import java.util.stream.Collectors;
  * @since 2020-09-08
  */
 @Service
-@CacheConfig(cacheNames = "dict")
+@CacheConfig(cacheNames = SysDictServiceImpl.CACHE_NAME)
+@RequiredArgsConstructor
 public class SysDictServiceImpl extends ServiceImpl<SysDictMapper, SysDictEntity> implements SysDictService {
 
+    static final String CACHE_NAME = "dict";
+    private static final String CACHE_KEY_ALL = "all";
+
+    private final CacheManager cacheManager;
+    private final RedisUtil redisUtil;
+
     @Override
     public Page<SysDictEntity> listDicts(ListDictQuery query) {
         return page(
@@ -47,25 +60,25 @@ public class SysDictServiceImpl extends ServiceImpl<SysDictMapper, SysDictEntity
     }
 
     @Override
-    @CacheEvict(key = "'all'")
     public String createDict(DictQuery dictQuery) {
         SysDictEntity dictEntity = BeanUtil.copyProperties(dictQuery, SysDictEntity.class);
         save(dictEntity);
+        dictChanged();
         return dictEntity.getId();
     }
 
     @Override
-    @CacheEvict(key = "'all'")
     public void updateDictById(String dictId, DictQuery query) {
         SysDictEntity dictEntity = BeanUtil.copyProperties(query, SysDictEntity.class);
         dictEntity.setId(dictId);
         updateById(dictEntity);
+        dictChanged();
     }
 
     @Override
-    @CacheEvict(key = "'all'")
     public void deleteDictById(String dictId) {
         removeById(dictId);
+        dictChanged();
     }
 
     @Override
@@ -76,4 +89,16 @@ public class SysDictServiceImpl extends ServiceImpl<SysDictMapper, SysDictEntity
         return dicts.stream().map(dict -> BeanUtil.copyProperties(dict, CacheDictVO.class))
                 .collect(Collectors.toList());
     }
+
+    /**
+     * 字典变更后删除缓存，版本号加1并通知各节点重建字典索引，
+     * 其他节点的本地缓存由缓存频道失效，和字典频道的消息先后不定，所以字典索引直接查库重建
+     */
+    private void dictChanged() {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache != null) {
+            cache.evict(CACHE_KEY_ALL);
+        }
+        redisUtil.publish(REDIS_CHANNEL_DICT, redisUtil.incr(REDIS_KEY_DICT_VERSION));
+    }
 }
@@ -6,6 +6,7 @@ import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.izneus.bonfire.common.base.CursorPage;
 import com.izneus.bonfire.common.constant.ErrorCode;
 import com.izneus.bonfire.common.exception.BadRequestException;
 import com.izneus.bonfire.common.util.CommonUtil;
@@ -19,19 +20,22 @@ import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
+import static com.izneus.bonfire.common.constant.Constant.EXPORT_DIR;
+import static com.izneus.bonfire.common.constant.Constant.EXPORT_FILE;
 import static com.izneus.bonfire.common.constant.Constant.TEMP_FILE;
 import static com.izneus.bonfire.common.constant.Constant.UPLOAD_FILE;
 
@@ -48,25 +52,34 @@ import static com.izneus.bonfire.common.constant.Constant.UPLOAD_FILE;
 @RequiredArgsConstructor
 public class SysFileServiceImpl extends ServiceImpl<SysFileMapper, SysFileEntity> implements SysFileService {
 
+    /**
+     * tomcat的sendfile请求属性，见org.apache.catalina.Globals
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final BonfireConfig bonfireConfig;
     private final JwtUtil jwtUtil;
 
     @Override
     public Page<SysFileEntity> listFiles(ListFileQuery query) {
         boolean isTimes = query.getCreateTimes() != null && query.getCreateTimes().size() == 2;
-        return page(
-                new Page<>(query.getPageNum(), query.getPageSize()),
-                new LambdaQueryWrapper<SysFileEntity>()
-                        .between(isTimes, SysFileEntity::getCreateTime,
-                                query.getCreateTimes().get(0), query.getCreateTimes().get(1))
-                        .and(wrapper -> wrapper
-                                .like(StrUtil.isNotBlank(query.getQuery()),
-                                        SysFileEntity::getFilename, query.getQuery())
-                                .or()
-                                .like(StrUtil.isNotBlank(query.getQuery()),
-                                        SysFileEntity::getRemark, query.getQuery()))
-                        .orderByDesc(SysFileEntity::getCreateTime)
-        );
+        LambdaQueryWrapper<SysFileEntity> wrapper = new LambdaQueryWrapper<SysFileEntity>()
+                .between(isTimes, SysFileEntity::getCreateTime,
+                        query.getCreateTimes().get(0), query.getCreateTimes().get(1))
+                .and(w -> w
+                        .like(StrUtil.isNotBlank(query.getQuery()),
+                                SysFileEntity::getFilename, query.getQuery())
+                        .or()
+                        .like(StrUtil.isNotBlank(query.getQuery()),
+                                SysFileEntity::getRemark, query.getQuery()));
+        if (CursorPage.isRequested(query)) {
+            return CursorPage.seek(this, query, wrapper, SysFileEntity::getCreateTime, SysFileEntity::getId);
+        }
+        return page(new Page<>(query.getPageNum(), query.getPageSize()),
+                wrapper.orderByDesc(SysFileEntity::getCreateTime));
     }
 
     @Override
@@ -106,7 +119,7 @@ public class SysFileServiceImpl extends ServiceImpl<SysFileMapper, SysFileEntity
     }
 
     @Override
-    public ResponseEntity<Resource> downloadFile(String token) {
+    public ResponseEntity<Resource> downloadFile(String token, ServletWebRequest request) {
         // 校验token有效性
         Claims claims = jwtUtil.getClaims(token);
         String filename = (String) claims.get("filename");
@@ -124,6 +137,9 @@ public class SysFileServiceImpl extends ServiceImpl<SysFileMapper, SysFileEntity
             case UPLOAD_FILE:
                 basePath = bonfireConfig.getPath().getUploadPath();
                 break;
+            case EXPORT_FILE:
+                basePath = bonfireConfig.getPath().getUploadPath() + File.separator + EXPORT_DIR;
+                break;
             default:
                 basePath = null;
                 break;
@@ -131,18 +147,36 @@ public class SysFileServiceImpl extends ServiceImpl<SysFileMapper, SysFileEntity
         if (StrUtil.isBlank(basePath)) {
             throw new BadRequestException(ErrorCode.INVALID_ARGUMENT, "非法的文件类型");
         }
-        String filePath = basePath + File.separator + filename;
-        Path path = Paths.get(filePath);
-        try {
-            Resource resource = new UrlResource(path.toUri());
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
+        File file = FileUtil.file(basePath, filename);
+        if (!file.isFile()) {
+            return ResponseEntity.notFound().build();
+        }
+        // 文件修改时间和大小作为ETag，If-None-Match或If-Modified-Since命中时返回304
+        long lastModified = file.lastModified();
+        long length = file.length();
+        String etag = StrUtil.format("\"{}-{}\"", Long.toHexString(lastModified), Long.toHexString(length));
+        if (request.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getName() + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(etag)
+                .lastModified(lastModified);
+        HttpServletRequest servletRequest = request.getRequest();
+        // 整个文件下载时交给tomcat用sendfile发送，不经过用户态缓冲区，
+        // 只有tomcat的NIO/NIO2/APR连接器开启useSendfile（默认开启）时才有这个属性，且该响应不能走压缩，
+        // 其他容器或不满足条件时走下面的FileSystemResource，由spring按缓冲区分块写出
+        if (HttpMethod.GET.matches(servletRequest.getMethod())
+                && servletRequest.getHeader(HttpHeaders.RANGE) == null
+                && Boolean.TRUE.equals(servletRequest.getAttribute(SENDFILE_SUPPORT))) {
+            servletRequest.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            servletRequest.setAttribute(SENDFILE_START, 0L);
+            servletRequest.setAttribute(SENDFILE_END, length);
+            return builder.contentLength(length).build();
         }
-        return ResponseEntity.notFound().build();
+        // 带Range时spring按ResourceRegion返回206，多段时为multipart/byteranges
+        return builder.body(new FileSystemResource(file));
     }
 }
@@ -6,7 +6,6 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.izneus.bonfire.common.constant.Dict;
-import com.izneus.bonfire.common.util.CommonUtil;
 import com.izneus.bonfire.module.security.CurrentUserUtil;
 import com.izneus.bonfire.module.system.controller.v1.query.ListNoticeQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.ListUserNoticeQuery;
@@ -62,8 +61,7 @@ public class SysNoticeServiceImpl extends ServiceImpl<SysNoticeMapper, SysNotice
         对于全局通知，在用户拉取通知列表的时候，生成未读记录，
         对于点对点或者点对面的通知，在用户通知关联表里生成一条未读记录，你也可以根据实际情况优化生成逻辑
         */
-        Dict.NoticeType noticeType = CommonUtil.getEnum(Dict.NoticeType.class, "value",
-                notice.getNoticeType());
+        Dict.NoticeType noticeType = Dict.NoticeType.of(notice.getNoticeType());
         switch (noticeType) {
             case GLOBAL:
                 // 全局通知，暂时不插入记录，等用户get通知时候，生成一条未读记录插入用户通知表
@@ -1,16 +1,20 @@
 package com.izneus.bonfire.module.system.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.izneus.bonfire.module.security.AuthorityChangeEvent;
 import com.izneus.bonfire.module.system.controller.v1.query.ListRoleQuery;
+import com.izneus.bonfire.module.system.controller.v1.query.RoleQuery;
 import com.izneus.bonfire.module.system.entity.SysRoleAuthorityEntity;
 import com.izneus.bonfire.module.system.entity.SysRoleEntity;
 import com.izneus.bonfire.module.system.mapper.SysRoleMapper;
 import com.izneus.bonfire.module.system.service.SysRoleAuthorityService;
 import com.izneus.bonfire.module.system.service.SysRoleService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,6 +34,7 @@ import java.util.stream.Collectors;
 public class SysRoleServiceImpl extends ServiceImpl<SysRoleMapper, SysRoleEntity> implements SysRoleService {
 
     private final SysRoleAuthorityService roleAuthorityService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public Page<SysRoleEntity> listRoles(ListRoleQuery query) {
@@ -43,6 +48,27 @@ public class SysRoleServiceImpl extends ServiceImpl<SysRoleMapper, SysRoleEntity
         );
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public String createRole(RoleQuery roleQuery) {
+        SysRoleEntity roleEntity = BeanUtil.copyProperties(roleQuery, SysRoleEntity.class);
+        if (!save(roleEntity)) {
+            return null;
+        }
+        eventPublisher.publishEvent(new AuthorityChangeEvent(AuthorityChangeEvent.Target.ROLE, roleEntity.getId()));
+        return roleEntity.getId();
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void updateRoleById(String id, RoleQuery roleQuery) {
+        SysRoleEntity roleEntity = BeanUtil.copyProperties(roleQuery, SysRoleEntity.class);
+        roleEntity.setId(id);
+        updateById(roleEntity);
+        // 角色名会变
+        eventPublisher.publishEvent(new AuthorityChangeEvent(AuthorityChangeEvent.Target.ROLE, id));
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void deleteRoleById(String id) {
@@ -51,6 +77,7 @@ public class SysRoleServiceImpl extends ServiceImpl<SysRoleMapper, SysRoleEntity
         // 再删除角色对应的权限
         roleAuthorityService.remove(new LambdaQueryWrapper<SysRoleAuthorityEntity>()
                 .eq(SysRoleAuthorityEntity::getRoleId, id));
+        eventPublisher.publishEvent(new AuthorityChangeEvent(AuthorityChangeEvent.Target.ROLE, id));
     }
 
     @Override
@@ -69,5 +96,6 @@ public class SysRoleServiceImpl extends ServiceImpl<SysRoleMapper, SysRoleEntity
             }).collect(Collectors.toList());
             roleAuthorityService.saveBatch(roleAuths);
         }
+        eventPublisher.publishEvent(new AuthorityChangeEvent(AuthorityChangeEvent.Target.ROLE, roleId));
     }
 }
@@ -5,6 +5,7 @@ import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.izneus.bonfire.common.base.CursorPage;
 import com.izneus.bonfire.common.constant.Dict;
 import com.izneus.bonfire.common.constant.ErrorCode;
 import com.izneus.bonfire.common.exception.BadRequestException;
@@ -44,28 +45,33 @@ public class SysTicketServiceImpl extends ServiceImpl<SysTicketMapper, SysTicket
 
     @Override
     public Page<SysTicketEntity> listTickets(ListTicketQuery query) {
+        // 游标分页时后面还要拼游标条件，or需要括起来
+        LambdaQueryWrapper<SysTicketEntity> wrapper = new LambdaQueryWrapper<SysTicketEntity>()
+                .and(StrUtil.isNotBlank(query.getQuery()), w -> w
+                        .eq(SysTicketEntity::getTitle, query.getQuery())
+                        .or()
+                        .eq(SysTicketEntity::getTicket, query.getQuery()));
+        // 游标分页固定按创建时间倒序，忽略orderBy
+        if (CursorPage.isRequested(query)) {
+            return CursorPage.seek(this, query, wrapper, SysTicketEntity::getCreateTime, SysTicketEntity::getId);
+        }
         // 默认创建时间倒序查询
         if (StrUtil.isBlank(query.getOrderBy())) {
             query.setOrderBy("create_time desc");
         }
-        return page(
-                new Page<>(query.getPageNum(), query.getPageSize()),
-                new LambdaQueryWrapper<SysTicketEntity>()
-                        .eq(StrUtil.isNotBlank(query.getQuery()), SysTicketEntity::getTitle, query.getQuery())
-                        .or()
-                        .eq(StrUtil.isNotBlank(query.getQuery()), SysTicketEntity::getTicket, query.getQuery())
-                        .apply("order by {0}", query.getOrderBy())
-        );
+        return page(new Page<>(query.getPageNum(), query.getPageSize()),
+                wrapper.apply("order by {0}", query.getOrderBy()));
     }
 
     @Override
     public Page<SysTicketEntity> listTicketsByUserId(ListUserTicketQuery query, String userId) {
-        return page(
-                new Page<>(query.getPageNum(), query.getPageSize()),
-                new LambdaQueryWrapper<SysTicketEntity>()
-                        .eq(SysTicketEntity::getCreateUser, userId)
-                        .orderByDesc(SysTicketEntity::getCreateTime)
-        );
+        LambdaQueryWrapper<SysTicketEntity> wrapper = new LambdaQueryWrapper<SysTicketEntity>()
+                .eq(SysTicketEntity::getCreateUser, userId);
+        if (CursorPage.isRequested(query)) {
+            return CursorPage.seek(this, query, wrapper, SysTicketEntity::getCreateTime, SysTicketEntity::getId);
+        }
+        return page(new Page<>(query.getPageNum(), query.getPageSize()),
+                wrapper.orderByDesc(SysTicketEntity::getCreateTime));
     }
 
     @Override
@@ -90,7 +96,8 @@ public class SysTicketServiceImpl extends ServiceImpl<SysTicketMapper, SysTicket
     public String replyTicket(ReplyTicketQuery query) {
         // 不能回复已经关闭的工单
         SysTicketEntity ticket = getById(query.getTicketId());
-        if (Dict.TicketStatus.CLOSED.getValue().equals(ticket.getStatus())) {
+        Dict.TicketStatus status = Dict.TicketStatus.of(ticket.getStatus());
+        if (status == Dict.TicketStatus.CLOSED) {
             throw new BadRequestException(ErrorCode.FAILED_PRECONDITION, "工单已经关闭");
         }
         String userId = CurrentUserUtil.getUser().getId();
@@ -99,7 +106,7 @@ public class SysTicketServiceImpl extends ServiceImpl<SysTicketMapper, SysTicket
             SysTicketFlowEntity flow = BeanUtil.copyProperties(query, SysTicketFlowEntity.class);
             flowService.save(flow);
             // 未处理的工单状态改为处理中
-            if (Dict.TicketStatus.PENDING.getValue().equals(ticket.getStatus())) {
+            if (status == Dict.TicketStatus.PENDING) {
                 updateTicketStatus(query.getTicketId(), Dict.TicketStatus.PROCESSING.getValue());
             }
             return flow.getId();
@@ -1,16 +1,21 @@
 package com.izneus.bonfire.module.system.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.poi.excel.BigExcelWriter;
-import cn.hutool.poi.excel.ExcelReader;
 import cn.hutool.poi.excel.ExcelUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.izneus.bonfire.common.base.CursorPage;
+import com.izneus.bonfire.common.constant.ErrorCode;
+import com.izneus.bonfire.common.exception.BadRequestException;
 import com.izneus.bonfire.common.util.RedisUtil;
 import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.security.AuthorityChangeEvent;
+import com.izneus.bonfire.module.security.PasswordHasher;
+import com.izneus.bonfire.module.security.SessionInfo;
+import com.izneus.bonfire.module.security.SessionRegistry;
 import com.izneus.bonfire.module.system.controller.v1.query.ListUserQuery;
 import com.izneus.bonfire.module.system.controller.v1.query.UserQuery;
 import com.izneus.bonfire.module.system.controller.v1.vo.UserVO;
@@ -22,19 +27,18 @@ import com.izneus.bonfire.module.system.service.SysFileService;
 import com.izneus.bonfire.module.system.service.SysUserRoleService;
 import com.izneus.bonfire.module.system.service.SysUserService;
 import lombok.RequiredArgsConstructor;
-import org.apache.poi.xssf.streaming.SXSSFSheet;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
-import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_AUTHS;
 import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_LOGIN_RETRY;
 
 /**
@@ -49,19 +53,33 @@ import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_LOGIN_RETRY;
 @RequiredArgsConstructor
 public class SysUserServiceImpl extends ServiceImpl<SysUserMapper, SysUserEntity> implements SysUserService {
 
+    private static final List<String> EXPORT_HEADERS = Arrays.asList(
+            "id", "用户名", "昵称", "全名", "email", "手机", "创建时间", "备注", "账号状态");
+    /**
+     * 导出的列宽，单位字符
+     */
+    static final int[] EXPORT_COLUMN_WIDTHS = {22, 16, 16, 16, 28, 14, 20, 30, 10};
+    /**
+     * 导入查重用in，oracle限制最多1000个
+     */
+    private static final int MAX_IMPORT_BATCH_SIZE = 1000;
+
     private final BonfireConfig bonfireConfig;
     private final SysUserRoleService userRoleService;
     private final SysFileService fileService;
     private final RedisUtil redisUtil;
+    private final SessionRegistry sessionRegistry;
+    private final PasswordHasher passwordHasher;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public Page<SysUserEntity> listUsers(ListUserQuery query) {
-        return page(
-                new Page<>(query.getPageNum(), query.getPageSize()),
-                new LambdaQueryWrapper<SysUserEntity>()
-                        .like(StrUtil.isNotBlank(query.getUsername()), SysUserEntity::getUsername, query.getUsername())
-                        .orderByDesc(SysUserEntity::getCreateTime)
-        );
+        LambdaQueryWrapper<SysUserEntity> wrapper = listWrapper(query);
+        if (CursorPage.isRequested(query)) {
+            return CursorPage.seek(this, query, wrapper, SysUserEntity::getCreateTime, SysUserEntity::getId);
+        }
+        return page(new Page<>(query.getPageNum(), query.getPageSize()),
+                wrapper.orderByDesc(SysUserEntity::getCreateTime));
     }
 
     @Override
@@ -69,7 +87,7 @@ public class SysUserServiceImpl extends ServiceImpl<SysUserMapper, SysUserEntity
     public String createUser(UserQuery userQuery) {
         // 新增用户
         SysUserEntity userEntity = BeanUtil.copyProperties(userQuery, SysUserEntity.class);
-        userEntity.setPassword(new BCryptPasswordEncoder().encode(bonfireConfig.getDefaultPassword()));
+        userEntity.setPassword(passwordHasher.encode(bonfireConfig.getDefaultPassword()));
         String userId = save(userEntity) ? userEntity.getId() : null;
         // 新增用户角色关联
         saveUserRoles(userId, userQuery.getRoleIds());
@@ -103,6 +121,8 @@ public class SysUserServiceImpl extends ServiceImpl<SysUserMapper, SysUserEntity
         // 更新用户角色表，先删除现有角色信息，再重新插入新角色
         userRoleService.remove(new LambdaQueryWrapper<SysUserRoleEntity>().eq(SysUserRoleEntity::getUserId, userId));
         saveUserRoles(userId, userQuery.getRoleIds());
+        // 提交后刷新已登录用户的权限
+        eventPublisher.publishEvent(new AuthorityChangeEvent(AuthorityChangeEvent.Target.USER, userId));
     }
 
     @Override
@@ -112,66 +132,67 @@ public class SysUserServiceImpl extends ServiceImpl<SysUserMapper, SysUserEntity
         removeById(userId);
         // 删除用户的角色
         userRoleService.remove(new LambdaQueryWrapper<SysUserRoleEntity>().eq(SysUserRoleEntity::getUserId, userId));
+        eventPublisher.publishEvent(new AuthorityChangeEvent(AuthorityChangeEvent.Target.USER, userId));
     }
 
     @Override
-    public String exportUsers(ListUserQuery query) {
-        String filename = IdUtil.fastSimpleUUID() + ".xlsx";
-        String filePath = bonfireConfig.getPath().getTempPath() + File.separator + filename;
-        // 创建excel writer
+    public long exportUsers(ListUserQuery query, String filePath, LongConsumer progress) {
+        // 导出全部符合条件的用户，不分页，数据库游标逐行取出直接写入sxssf窗口，内存占用和行数无关
         BigExcelWriter writer = ExcelUtil.getBigWriter(filePath);
-        List<Map<String, Object>> exportData = new ArrayList<>();
-        List<SysUserEntity> users = listUsers(query).getRecords();
-        // 填充数据
-        for (SysUserEntity user : users) {
-            Map<String, Object> map = new LinkedHashMap<>();
-            map.put("id", user.getId());
-            map.put("用户名", user.getUsername());
-            map.put("昵称", user.getNickname());
-            map.put("全名", user.getFullname());
-            map.put("email", user.getEmail());
-            map.put("手机", user.getMobile());
-            map.put("创建时间", user.getCreateTime());
-            map.put("备注", user.getRemark());
-            map.put("账号状态", user.getStatus());
-            exportData.add(map);
+        long[] rows = {0};
+        try {
+            // 刷到磁盘的临时文件也压缩一下，百万行时能省不少空间
+            ((SXSSFWorkbook) writer.getWorkbook()).setCompressTempFiles(true);
+            writer.writeHeadRow(EXPORT_HEADERS);
+            // 固定列宽，autoSizeColumn要逐行测量文本宽度，行数多时非常慢
+            for (int i = 0; i < EXPORT_COLUMN_WIDTHS.length; i++) {
+                writer.setColumnWidth(i, EXPORT_COLUMN_WIDTHS[i]);
+            }
+            LambdaQueryWrapper<SysUserEntity> wrapper = listWrapper(query).orderByDesc(SysUserEntity::getCreateTime);
+            baseMapper.exportUsers(wrapper, context -> {
+                SysUserEntity user = context.getResultObject();
+                writer.writeRow(Arrays.asList(user.getId(), user.getUsername(), user.getNickname(),
+                        user.getFullname(), user.getEmail(), user.getMobile(), user.getCreateTime(),
+                        user.getRemark(), user.getStatus()));
+                rows[0] = context.getResultCount();
+                progress.accept(rows[0]);
+            });
+        } finally {
+            writer.close();
         }
-        // 写文件
-        writer.write(exportData, true);
-        SXSSFSheet sheet = (SXSSFSheet) writer.getSheet();
-        sheet.trackAllColumnsForAutoSizing();
-        writer.autoSizeColumnAll();
-        writer.close();
-        return filename;
+        return rows[0];
+    }
+
+    private LambdaQueryWrapper<SysUserEntity> listWrapper(ListUserQuery query) {
+        return new LambdaQueryWrapper<SysUserEntity>()
+                .like(StrUtil.isNotBlank(query.getUsername()), SysUserEntity::getUsername, query.getUsername());
     }
 
     @Override
     public boolean resetPassword(String userId) {
         SysUserEntity userEntity = new SysUserEntity();
         userEntity.setId(userId);
-        userEntity.setPassword(new BCryptPasswordEncoder().encode(bonfireConfig.getDefaultPassword()));
+        userEntity.setPassword(passwordHasher.encode(bonfireConfig.getDefaultPassword()));
         return updateById(userEntity);
     }
 
     @Override
-    public void importUsers(String fileId) {
+    public String importUsers(String fileId, String reportPath, LongConsumer progress) {
         // 获得提前上传的导入文件
         SysFileEntity fileEntity = fileService.getById(fileId);
+        if (fileEntity == null) {
+            throw new BadRequestException(ErrorCode.NOT_FOUND, "导入文件不存在");
+        }
         String filePath = bonfireConfig.getPath().getUploadPath() + File.separator + fileEntity.getUniqueFilename();
-        // 解析excel写用户表
-        ExcelReader reader = ExcelUtil.getReader(filePath);
-        List<Map<String, Object>> users = reader.readAll();
-        List<SysUserEntity> userEntities = users.stream().map(user -> {
-            SysUserEntity userEntity = new SysUserEntity();
-            userEntity.setUsername((String) user.get("用户名"));
-            userEntity.setNickname((String) user.get("昵称"));
-            userEntity.setFullname((String) user.get("全名"));
-            userEntity.setEmail((String) user.get("email"));
-            userEntity.setMobile((String) user.get("手机"));
-            userEntity.setRemark((String) user.get("备注"));
-            return userEntity;
-        }).collect(Collectors.toList());
-        saveBatch(userEntities);
+        // 导入的用户都是默认密码，整批共用一次哈希，逐个哈希几十万行要占满cpu很久
+        String password = passwordHasher.encode(bonfireConfig.getDefaultPassword());
+        int batchSize = Math.min(bonfireConfig.getExport().getImportBatchSize(), MAX_IMPORT_BATCH_SIZE);
+        // sax逐行解析excel写用户表，只读第一个sheet
+        try (UserImportHandler handler = new UserImportHandler(this, password, reportPath, batchSize, progress)) {
+            ExcelUtil.readBySax(filePath, 0, handler);
+            handler.finish();
+            return handler.summary();
+        }
     }
 
     @Override
@@ -182,9 +203,20 @@ public class SysUserServiceImpl extends ServiceImpl<SysUserMapper, SysUserEntity
 
     @Override
     public void kickOut(String userId) {
-        // 删除白名单
-        String key = StrUtil.format(REDIS_KEY_AUTHS, userId);
-        redisUtil.del(key);
+        // 删除全部会话和权限
+        sessionRegistry.removeAll(userId);
+    }
+
+    @Override
+    public List<SessionInfo> listSessions(String userId) {
+        return sessionRegistry.list(userId);
+    }
+
+    @Override
+    public void killSession(String userId, String jti) {
+        if (!sessionRegistry.remove(userId, jti)) {
+            throw new BadRequestException(ErrorCode.NOT_FOUND, "会话不存在或已下线");
+        }
     }
 
     private void saveUserRoles(String userId, List<String> roleIds) {
@@ -0,0 +1,215 @@
+package com.izneus.bonfire.module.system.service.impl;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.lang.Validator;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.poi.excel.BigExcelWriter;
+import cn.hutool.poi.excel.ExcelUtil;
+import cn.hutool.poi.excel.sax.handler.RowHandler;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.izneus.bonfire.common.constant.Dict;
+import com.izneus.bonfire.common.constant.ErrorCode;
+import com.izneus.bonfire.common.exception.BadRequestException;
+import com.izneus.bonfire.module.system.entity.SysUserEntity;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * 用户导入，sax逐行读excel，校验后攒够一批写一次库，
+ * 某一行校验失败或者某一批写库失败只记录到导入结果文件，不影响其他行，内存占用和行数无关
+ *
+ * @author Izneus
+ * @date 2021/04/09
+ */
+@Slf4j
+class UserImportHandler implements RowHandler, Closeable {
+
+    private static final String COLUMN_USERNAME = "用户名";
+    private static final int MAX_USERNAME_LENGTH = 100;
+
+    private final IService<SysUserEntity> userService;
+    private final String password;
+    private final int batchSize;
+    private final LongConsumer progress;
+    private final BigExcelWriter report;
+
+    /**
+     * 表头名到列序号
+     */
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<SysUserEntity> batch = new ArrayList<>();
+    private final Set<String> batchUsernames = new HashSet<>();
+    /**
+     * 当前批次每个用户在excel中的行号
+     */
+    private final List<Long> batchRows = new ArrayList<>();
+    private long total;
+    private long success;
+    private long failed;
+
+    /**
+     * @param userService 写用户表
+     * @param password    导入用户的密码哈希
+     * @param reportPath  导入结果文件，记录失败的行
+     * @param batchSize   每批写库的行数
+     * @param progress    已处理的行数回调
+     */
+    UserImportHandler(IService<SysUserEntity> userService, String password, String reportPath, int batchSize,
+                      LongConsumer progress) {
+        this.userService = userService;
+        this.password = password;
+        this.batchSize = batchSize;
+        this.progress = progress;
+        this.report = ExcelUtil.getBigWriter(reportPath);
+        report.writeHeadRow(Arrays.asList("行号", COLUMN_USERNAME, "错误"));
+        report.setColumnWidth(0, 10);
+        report.setColumnWidth(1, 20);
+        report.setColumnWidth(2, 40);
+    }
+
+    @Override
+    public void handle(int sheetIndex, long rowIndex, List<Object> rowList) {
+        if (rowIndex == 0) {
+            for (int i = 0; i < rowList.size(); i++) {
+                columns.put(StrUtil.trim(Convert.toStr(rowList.get(i))), i);
+            }
+            if (!columns.containsKey(COLUMN_USERNAME)) {
+                throw new BadRequestException(ErrorCode.INVALID_ARGUMENT, "导入文件缺少用户名列");
+            }
+            return;
+        }
+        // 跳过空行
+        if (rowList.stream().allMatch(StrUtil::isBlankIfStr)) {
+            return;
+        }
+        total++;
+        // excel里的行号从1开始
+        long rowNum = rowIndex + 1;
+        SysUserEntity user = new SysUserEntity();
+        user.setUsername(cell(rowList, COLUMN_USERNAME));
+        user.setNickname(cell(rowList, "昵称"));
+        user.setFullname(cell(rowList, "全名"));
+        user.setEmail(cell(rowList, "email"));
+        user.setMobile(cell(rowList, "手机"));
+        user.setRemark(cell(rowList, "备注"));
+        String error = validate(user);
+        if (error != null) {
+            fail(rowNum, user.getUsername(), error);
+        } else {
+            user.setPassword(password);
+            user.setStatus(Dict.UserStatus.OK.getCode());
+            batch.add(user);
+            batchRows.add(rowNum);
+            batchUsernames.add(user.getUsername());
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+        progress.accept(total);
+    }
+
+    /**
+     * 写入最后一批
+     */
+    void finish() {
+        flush();
+    }
+
+    /**
+     * 导入结果说明
+     *
+     * @return 说明
+     */
+    String summary() {
+        return StrUtil.format("共{}行，成功{}行，失败{}行", total, success, failed);
+    }
+
+    @Override
+    public void close() {
+        report.close();
+    }
+
+    private String validate(SysUserEntity user) {
+        if (StrUtil.isBlank(user.getUsername())) {
+            return "用户名为空";
+        }
+        if (user.getUsername().length() > MAX_USERNAME_LENGTH) {
+            return "用户名过长";
+        }
+        if (StrUtil.isNotBlank(user.getEmail()) && !Validator.isEmail(user.getEmail())) {
+            return "email格式错误";
+        }
+        if (StrUtil.isNotBlank(user.getMobile()) && !Validator.isMobile(user.getMobile())) {
+            return "手机格式错误";
+        }
+        // 和本批次前面的行重复，之前批次的已经写库，由flush里的查询判断
+        if (batchUsernames.contains(user.getUsername())) {
+            return "用户名重复";
+        }
+        return null;
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // 一批查一次已存在的用户名
+        Set<String> existing = userService.list(new LambdaQueryWrapper<SysUserEntity>()
+                .select(SysUserEntity::getUsername)
+                .in(SysUserEntity::getUsername, batchUsernames))
+                .stream()
+                .map(SysUserEntity::getUsername)
+                .collect(Collectors.toCollection(HashSet::new));
+        List<SysUserEntity> users = new ArrayList<>(batch.size());
+        List<Long> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            SysUserEntity user = batch.get(i);
+            if (existing.contains(user.getUsername())) {
+                fail(batchRows.get(i), user.getUsername(), "用户名已存在");
+            } else {
+                users.add(user);
+                rows.add(batchRows.get(i));
+            }
+        }
+        batch.clear();
+        batchRows.clear();
+        batchUsernames.clear();
+        if (users.isEmpty()) {
+            return;
+        }
+        try {
+            userService.saveBatch(users, batchSize);
+            success += users.size();
+        } catch (Exception e) {
+            // 并发导入同名用户等情况，整批记失败，继续导入后面的行
+            log.warn("导入用户写库失败，行号{}～{}", rows.get(0), rows.get(rows.size() - 1), e);
+            for (int i = 0; i < users.size(); i++) {
+                fail(rows.get(i), users.get(i).getUsername(), "写入失败");
+            }
+        }
+    }
+
+    private void fail(long rowNum, String username, String error) {
+        failed++;
+        report.writeRow(Arrays.asList(rowNum, username, error));
+    }
+
+    private String cell(List<Object> rowList, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= rowList.size()) {
+            return null;
+        }
+        return StrUtil.trimToNull(Convert.toStr(rowList.get(index)));
+    }
+}
@@ -0,0 +1,61 @@
+package com.izneus.bonfire.common.annotation;
+
+import com.izneus.bonfire.common.constant.Dict;
+import lombok.AllArgsConstructor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class ValueOfEnumValidatorTest {
+
+    private static ValidatorFactory factory;
+    private static Validator validator;
+
+    @AllArgsConstructor
+    static class Query {
+        @ValueOfEnum(enumClass = Dict.TicketStatus.class)
+        private String status;
+    }
+
+    @BeforeAll
+    static void setUp() {
+        factory = Validation.buildDefaultValidatorFactory();
+        validator = factory.getValidator();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    void acceptsEveryValue() {
+        for (Dict.TicketStatus status : Dict.TicketStatus.values()) {
+            assertThat(validator.validate(new Query(status.getValue()))).as(status.name()).isEmpty();
+        }
+    }
+
+    @Test
+    void acceptsNull() {
+        // 是否必填交给@NotNull
+        assertThat(validator.validate(new Query(null))).isEmpty();
+    }
+
+    @Test
+    void rejectsUnknownValues() {
+        assertThat(validator.validate(new Query("9"))).hasSize(1);
+        assertThat(validator.validate(new Query(""))).hasSize(1);
+        // 枚举名不是字典值
+        assertThat(validator.validate(new Query("PENDING"))).hasSize(1);
+    }
+}
@@ -0,0 +1,42 @@
+package com.izneus.bonfire.common.aspect;
+
+import cn.hutool.core.util.StrUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class AccessLogWriterTest {
+
+    @Test
+    void truncateKeepsShortValues() {
+        assertThat(AccessLogWriter.truncate(null, 100)).isNull();
+        assertThat(AccessLogWriter.truncate("abc", 3)).isEqualTo("abc");
+        assertThat(AccessLogWriter.truncate("用户不存在", 15)).isEqualTo("用户不存在");
+    }
+
+    @Test
+    void truncateCountsUtf8Bytes() {
+        // 50个中文字符是150字节，按字符截断的97个字符会超出varchar2(100)
+        String message = StrUtil.repeat("用户名已存在", 10);
+        String remark = AccessLogWriter.truncate(message, 100);
+        assertThat(remark.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(100);
+        assertThat(remark).endsWith("...").startsWith("用户名已存在");
+        // 97字节只放得下32个中文字符
+        assertThat(remark).hasSize(32 + 3);
+    }
+
+    @Test
+    void truncateDoesNotSplitSurrogatePairs() {
+        String message = StrUtil.repeat("a🔥", 10);
+        String remark = AccessLogWriter.truncate(message, 12);
+        assertThat(remark.getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(12);
+        // a(1) + 🔥(4) + a(1) = 6字节，再加一个🔥超过9字节
+        assertThat(remark).isEqualTo("a🔥a...");
+    }
+}
@@ -0,0 +1,93 @@
+package com.izneus.bonfire.common.aspect;
+
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.system.controller.v1.query.LoginQuery;
+import lombok.Data;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class JacksonParamSerializerTest {
+
+    private static final int MAX_LENGTH = 100;
+
+    private JacksonParamSerializer serializer;
+
+    @BeforeEach
+    void setUp() {
+        BonfireConfig bonfireConfig = new BonfireConfig();
+        bonfireConfig.getAccessLog().setParamMaxLength(MAX_LENGTH);
+        serializer = new JacksonParamSerializer(new ObjectMapper(), bonfireConfig);
+    }
+
+    @Test
+    void sensitiveFieldIsMasked() {
+        LoginQuery query = new LoginQuery();
+        query.setUsername("admin");
+        query.setPassword("Secret123");
+
+        String param = serializer.serialize(new Object[]{query});
+
+        assertThat(param).contains("\"username\":\"admin\"").contains("\"password\":\"*\"")
+                .doesNotContain("Secret123");
+    }
+
+    @Test
+    void ignoredArgsAreWrittenAsNull() {
+        MultipartFile file = new MockMultipartFile("file", "a.txt", null, new byte[]{1, 2, 3});
+
+        String param = serializer.serialize(new Object[]{file, new MockHttpServletRequest(), "id"});
+
+        assertThat(param).isEqualTo("[null,null,\"id\"]");
+    }
+
+    @Test
+    void ignoredPropertiesAreSkipped() {
+        Upload upload = new Upload();
+        upload.setRemark("r");
+        upload.setFile(new MockMultipartFile("file", new byte[]{1}));
+
+        assertThat(serializer.serialize(new Object[]{upload})).isEqualTo("[{\"remark\":\"r\"}]");
+    }
+
+    @Test
+    void longParamIsTruncated() {
+        String param = serializer.serialize(new Object[]{StrUtil.repeat('x', 1000)});
+
+        assertThat(param).hasSize(MAX_LENGTH).startsWith("[\"xxx").endsWith("...");
+    }
+
+    @Test
+    void shortParamIsNotTruncated() {
+        assertThat(serializer.serialize(new Object[]{"a", 1})).isEqualTo("[\"a\",1]");
+        assertThat(serializer.serialize(new Object[0])).isNull();
+    }
+
+    @Test
+    void snapshotDropsIgnoredArgs() {
+        MultipartFile file = new MockMultipartFile("file", new byte[]{1});
+        Object[] args = {file, "id"};
+
+        Object[] snapshot = serializer.snapshot(args);
+
+        assertThat(snapshot).containsExactly(null, "id");
+        // 原参数不变
+        assertThat(args[0]).isSameAs(file);
+    }
+
+    @Data
+    static class Upload {
+        private String remark;
+        private MultipartFile file;
+    }
+}
@@ -0,0 +1,121 @@
+package com.izneus.bonfire.common.base;
+
+import cn.hutool.core.codec.Base64;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.izneus.bonfire.common.exception.BadRequestException;
+import com.izneus.bonfire.module.system.entity.SysAccessLogEntity;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class CursorPageTest {
+
+    private IService<SysAccessLogEntity> service;
+    private List<SysAccessLogEntity> rows;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // lambda条件需要实体的字段映射，单元测试里没有mybatis-plus的自动配置
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""),
+                SysAccessLogEntity.class);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = mock(IService.class);
+        rows = Collections.emptyList();
+        when(service.page(any(CursorPage.class), any())).thenAnswer(invocation -> {
+            CursorPage<SysAccessLogEntity> page = invocation.getArgument(0);
+            page.setRecords(rows);
+            return page;
+        });
+    }
+
+    @Test
+    void cursorRoundTrip() {
+        Date createTime = new Date(1617235200123L);
+
+        Object[] key = CursorPage.decode(CursorPage.encode(createTime, "a,b"));
+
+        assertThat(key[0]).isEqualTo(createTime);
+        // id里有分隔符也能还原
+        assertThat(key[1]).isEqualTo("a,b");
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertThatThrownBy(() -> CursorPage.decode(Base64.encodeUrlSafe("no separator")))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> CursorPage.decode(Base64.encodeUrlSafe("yesterday,1")))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void nullCreateTimeIsExcluded() {
+        LambdaQueryWrapper<SysAccessLogEntity> wrapper = new LambdaQueryWrapper<>();
+
+        CursorPage.seek(service, query("", 2L), wrapper,
+                SysAccessLogEntity::getCreateTime, SysAccessLogEntity::getId);
+
+        assertThat(wrapper.getSqlSegment()).contains("CREATE_TIME IS NOT NULL");
+    }
+
+    @Test
+    void fullPageYieldsCursorOfLastRow() {
+        Date time = new Date(1617235200000L);
+        rows = Arrays.asList(row("2", time), row("1", time));
+
+        CursorPage<SysAccessLogEntity> page = CursorPage.seek(service, query("", 2L), new LambdaQueryWrapper<>(),
+                SysAccessLogEntity::getCreateTime, SysAccessLogEntity::getId);
+
+        Object[] key = CursorPage.decode(page.getNextCursor());
+        assertThat(key).containsExactly(time, "1");
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        rows = Collections.singletonList(row("1", new Date()));
+        LambdaQueryWrapper<SysAccessLogEntity> wrapper = new LambdaQueryWrapper<>();
+
+        CursorPage<SysAccessLogEntity> page = CursorPage.seek(service,
+                query(CursorPage.encode(new Date(), "2"), 2L), wrapper,
+                SysAccessLogEntity::getCreateTime, SysAccessLogEntity::getId);
+
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(wrapper.getSqlSegment()).contains("CREATE_TIME <", "ID <");
+    }
+
+    private static BasePageQuery query(String cursor, long pageSize) {
+        BasePageQuery query = new BasePageQuery();
+        query.setCursor(cursor);
+        query.setPageSize(pageSize);
+        return query;
+    }
+
+    private static SysAccessLogEntity row(String id, Date createTime) {
+        SysAccessLogEntity entity = new SysAccessLogEntity();
+        entity.setId(id);
+        entity.setCreateTime(createTime);
+        return entity;
+    }
+}
@@ -0,0 +1,61 @@
+package com.izneus.bonfire.common.cache;
+
+import cn.hutool.core.util.StrUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class GzipRedisSerializerTest {
+
+    private static final String LARGE = StrUtil.repeat("{\"dictType\":\"user_status\"},", 200);
+
+    @Test
+    void smallValueIsStoredAsIs() {
+        GzipRedisSerializer<String> serializer = new GzipRedisSerializer<>(RedisSerializer.string(), 1024);
+
+        byte[] bytes = serializer.serialize("small");
+
+        assertThat(bytes).isEqualTo("small".getBytes(StandardCharsets.UTF_8));
+        assertThat(serializer.deserialize(bytes)).isEqualTo("small");
+    }
+
+    @Test
+    void largeValueIsCompressedAndRestored() {
+        GzipRedisSerializer<String> serializer = new GzipRedisSerializer<>(RedisSerializer.string(), 1024);
+
+        byte[] bytes = serializer.serialize(LARGE);
+
+        // gzip头
+        assertThat(bytes[0]).isEqualTo((byte) 0x1f);
+        assertThat(bytes[1]).isEqualTo((byte) 0x8b);
+        assertThat(bytes.length).isLessThan(LARGE.length());
+        assertThat(serializer.deserialize(bytes)).isEqualTo(LARGE);
+    }
+
+    @Test
+    void compressedAndPlainValuesCanBeMixed() {
+        // 关闭压缩后仍能读出之前压缩写入的值，反之亦然
+        GzipRedisSerializer<String> compressing = new GzipRedisSerializer<>(RedisSerializer.string(), 1024);
+        GzipRedisSerializer<String> plain = new GzipRedisSerializer<>(RedisSerializer.string(), 0);
+
+        assertThat(plain.deserialize(compressing.serialize(LARGE))).isEqualTo(LARGE);
+        assertThat(plain.serialize(LARGE)).isEqualTo(LARGE.getBytes(StandardCharsets.UTF_8));
+        assertThat(compressing.deserialize(plain.serialize(LARGE))).isEqualTo(LARGE);
+    }
+
+    @Test
+    void nullAndEmptyValuesPassThrough() {
+        GzipRedisSerializer<String> serializer = new GzipRedisSerializer<>(RedisSerializer.string(), 1);
+
+        assertThat(serializer.serialize(null)).isNull();
+        assertThat(serializer.deserialize(null)).isNull();
+        assertThat(serializer.deserialize(new byte[0])).isEmpty();
+    }
+}
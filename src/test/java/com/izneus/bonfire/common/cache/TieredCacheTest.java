@@ -0,0 +1,59 @@
+package com.izneus.bonfire.common.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class TieredCacheTest {
+
+    private Cache remote;
+    private TieredCache cache;
+
+    @BeforeEach
+    void setUp() {
+        remote = mock(Cache.class);
+        cache = new TieredCache("test", Caffeine.newBuilder().build(), remote,
+                mock(TieredCacheManager.class), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void nullLoadedValueIsNotCached() {
+        assertThat(cache.<String>get("k", () -> null)).isNull();
+
+        verify(remote, never()).put(any(), any());
+        // 没有缓存null，下次仍然加载
+        assertThat(cache.get("k", () -> "v")).isEqualTo("v");
+        verify(remote).put("k", "v");
+    }
+
+    @Test
+    void loadedValueIsServedLocally() {
+        cache.get("k", () -> "v");
+
+        assertThat(cache.get("k", () -> "other")).isEqualTo("v");
+        assertThat(cache.get("k").get()).isEqualTo("v");
+    }
+
+    @Test
+    void puttingNullEvicts() {
+        cache.put("k", "v");
+
+        cache.put("k", null);
+
+        verify(remote, never()).put("k", null);
+        verify(remote).evict("k");
+        assertThat(cache.get("k")).isNull();
+    }
+}
@@ -0,0 +1,81 @@
+package com.izneus.bonfire.common.constant;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class DictTest {
+
+    @Test
+    void ofFindsEveryConstant() throws Exception {
+        List<Class<?>> enums = valueEnums();
+        assertThat(enums).isNotEmpty();
+        for (Class<?> type : enums) {
+            Method of = type.getMethod("of", String.class);
+            for (Object constant : type.getEnumConstants()) {
+                assertThat(of.invoke(null, ((Dict.ValueEnum) constant).getValue()))
+                        .as("%s.of", type.getSimpleName())
+                        .isSameAs(constant);
+            }
+        }
+    }
+
+    @Test
+    void valuesAreUniqueWithinEachEnum() {
+        // 字典值重复时映射里只剩后一个，前一个永远查不到
+        for (Class<?> type : valueEnums()) {
+            assertThat(rawValueMap(type)).as(type.getSimpleName()).hasSize(type.getEnumConstants().length);
+        }
+    }
+
+    @Test
+    void unknownAndNullValuesAreNull() {
+        assertThat(Dict.JobStatus.of(null)).isNull();
+        assertThat(Dict.JobStatus.of("9")).isNull();
+        assertThat(Dict.UserStatus.of("")).isNull();
+        assertThat(Dict.TicketStatus.of(null)).isNull();
+        // 按字典值查，不是按枚举名
+        assertThat(Dict.NoticeType.of("GLOBAL")).isNull();
+    }
+
+    @Test
+    void codeIsTheValueOfStatusEnums() {
+        assertThat(Dict.UserStatus.of(Dict.UserStatus.LOCK.getCode())).isSameAs(Dict.UserStatus.LOCK);
+        assertThat(Dict.DictStatus.of("1")).isSameAs(Dict.DictStatus.DISABLE);
+    }
+
+    @Test
+    void valueMapIsBuiltOnceAndReadOnly() {
+        Map<String, Dict.JobStatus> map = Dict.valueMap(Dict.JobStatus.class);
+
+        assertThat(Dict.valueMap(Dict.JobStatus.class)).isSameAs(map);
+        assertThatThrownBy(() -> map.put("9", Dict.JobStatus.OK)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void enumWithoutValueIsRejected() {
+        assertThatThrownBy(() -> rawValueMap(Thread.State.class)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<Class<?>> valueEnums() {
+        return Arrays.stream(Dict.class.getDeclaredClasses())
+                .filter(type -> type.isEnum() && Dict.ValueEnum.class.isAssignableFrom(type))
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, ?> rawValueMap(Class<?> type) {
+        return Dict.valueMap((Class) type);
+    }
+}
@@ -0,0 +1,126 @@
+package com.izneus.bonfire.module.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class JwtUtilTest {
+
+    private static final String USER_ID = "u1";
+
+    private AuthorityCache authorityCache;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("1Q8oTpiVuQeoV7N6ktMmOkMvpJPqNwm+zaVxzeskREE=");
+        jwtConfig.setExpire(1800L);
+        authorityCache = mock(AuthorityCache.class);
+        TokenBlacklist tokenBlacklist = mock(TokenBlacklist.class);
+        when(tokenBlacklist.isRevoked(anyString())).thenReturn(false);
+        jwtUtil = new JwtUtil(jwtConfig, authorityCache, mock(SessionRegistry.class), tokenBlacklist);
+    }
+
+    @Test
+    void verifiedTokenIsCached() {
+        String token = jwtUtil.createToken(USER_ID, "admin");
+
+        Claims claims = jwtUtil.getClaims(token);
+
+        assertThat(claims.getSubject()).isEqualTo(USER_ID);
+        assertThat(claims.get("username", String.class)).isEqualTo("admin");
+        // 第二次直接命中缓存，不再校验签名和反序列化
+        assertThat(jwtUtil.getClaims(token)).isSameAs(claims);
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = jwtUtil.createToken(USER_ID, "admin");
+        jwtUtil.getClaims(token);
+        // 改动签名的第一个字符，缓存key是整个token的哈希，不会命中原token的缓存
+        int index = token.lastIndexOf('.') + 1;
+        String tampered = token.substring(0, index) + (token.charAt(index) == 'A' ? 'B' : 'A')
+                + token.substring(index + 1);
+
+        assertThatThrownBy(() -> jwtUtil.getClaims(tampered)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = jwtUtil.createToken(USER_ID, -1L, Collections.emptyMap());
+
+        assertThatThrownBy(() -> jwtUtil.getClaims(token)).isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    void cacheEntryExpiresWithToken() throws InterruptedException {
+        String token = jwtUtil.createToken(USER_ID, 1L, Collections.emptyMap());
+        assertThat(jwtUtil.getClaims(token).getSubject()).isEqualTo(USER_ID);
+
+        // exp精确到秒，多等一秒
+        Thread.sleep(2100);
+
+        // 缓存不会超过token本身的有效期，过期后重新校验时抛出异常
+        assertThatThrownBy(() -> jwtUtil.getClaims(token)).isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    void reloadsOnceWhenCacheWasLoadedBeforeLogin() {
+        String token = jwtUtil.createToken(USER_ID, "admin");
+        String jti = jwtUtil.getClaims(token).getId();
+        // 其他节点登录前加载的缓存，还没有这个会话
+        long before = System.currentTimeMillis() - 1000;
+        when(authorityCache.get(USER_ID)).thenReturn(entry(before));
+        when(authorityCache.reload(USER_ID)).thenReturn(entry(System.currentTimeMillis(), jti));
+
+        Authentication authentication = jwtUtil.getAuthentication(token);
+
+        assertThat(authentication).isNotNull();
+        assertThat(((SecurityUser) authentication.getPrincipal()).getId()).isEqualTo(USER_ID);
+        verify(authorityCache).reload(USER_ID);
+    }
+
+    @Test
+    void rejectsOfflineSessionWithoutReloading() {
+        String token = jwtUtil.createToken(USER_ID, "admin");
+        // 缓存在token签发之后加载，会话不在其中说明已经下线
+        when(authorityCache.get(USER_ID)).thenReturn(entry(System.currentTimeMillis() + 60000));
+
+        assertThat(jwtUtil.getAuthentication(token)).isNull();
+        verify(authorityCache, never()).reload(anyString());
+    }
+
+    @Test
+    void rejectsWhenReloadStillMissesSession() {
+        String token = jwtUtil.createToken(USER_ID, "admin");
+        when(authorityCache.get(USER_ID)).thenReturn(entry(0));
+        when(authorityCache.reload(USER_ID)).thenReturn(entry(System.currentTimeMillis()));
+
+        assertThat(jwtUtil.getAuthentication(token)).isNull();
+        verify(authorityCache).reload(USER_ID);
+    }
+
+    private static AuthorityCache.Entry entry(long loadTime, String... jtis) {
+        return new AuthorityCache.Entry(Collections.emptyList(), new HashSet<>(Arrays.asList(jtis)), loadTime);
+    }
+}
@@ -0,0 +1,72 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_RATE_LIMIT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 令牌桶脚本在redis里执行，和contextLoads一样需要连接redis
+ *
+ * @author Izneus
+ * @date 2021/04/12
+ */
+@SpringBootTest
+class RateLimiterTest {
+
+    @Autowired
+    private RateLimiter rateLimiter;
+    @Autowired
+    private RedisUtil redisUtil;
+
+    private String key;
+
+    @BeforeEach
+    void setUp() {
+        key = "test:" + IdUtil.fastSimpleUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisUtil.del(StrUtil.format(REDIS_KEY_RATE_LIMIT, key));
+    }
+
+    @Test
+    void burstIsLimitedToCapacity() {
+        // 每分钟补充1个，测试期间补充的令牌不足1个
+        BonfireConfig.Bucket bucket = new BonfireConfig.Bucket(3, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.tryAcquire(key, bucket)).as("第%d个请求", i + 1).isZero();
+        }
+        long wait = rateLimiter.tryAcquire(key, bucket);
+
+        // 补充1个令牌最多要1分钟
+        assertThat(wait).isPositive().isLessThanOrEqualTo(60000);
+        // 等待期内在本地拒绝
+        assertThat(rateLimiter.tryAcquire(key, bucket)).isPositive();
+    }
+
+    @Test
+    void bucketsAreIndependent() {
+        BonfireConfig.Bucket bucket = new BonfireConfig.Bucket(1, 1);
+
+        assertThat(rateLimiter.tryAcquire(key, bucket)).isZero();
+        assertThat(rateLimiter.tryAcquire(key, bucket)).isPositive();
+
+        String other = key + ":other";
+        try {
+            assertThat(rateLimiter.tryAcquire(other, bucket)).isZero();
+        } finally {
+            redisUtil.del(StrUtil.format(REDIS_KEY_RATE_LIMIT, other));
+        }
+    }
+}
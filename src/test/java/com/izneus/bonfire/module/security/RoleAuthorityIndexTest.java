@@ -0,0 +1,67 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.izneus.bonfire.module.system.entity.SysUserEntity;
+import com.izneus.bonfire.module.system.entity.SysUserRoleEntity;
+import com.izneus.bonfire.module.system.mapper.SysUserMapper;
+import com.izneus.bonfire.module.system.mapper.SysUserRoleMapper;
+import com.izneus.bonfire.module.system.service.dto.ListAuthDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 角色权限索引和listAuthsByUserId五表关联的结果对比，和contextLoads一样需要连接数据库
+ *
+ * @author Izneus
+ * @date 2021/04/12
+ */
+@SpringBootTest
+class RoleAuthorityIndexTest {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    @Autowired
+    private RoleAuthorityIndex roleAuthorityIndex;
+    @Autowired
+    private SysUserMapper userMapper;
+    @Autowired
+    private SysUserRoleMapper userRoleMapper;
+
+    @Test
+    void authStringMatchesJoinQueryForEveryUser() {
+        roleAuthorityIndex.rebuild();
+        List<SysUserEntity> users = userMapper.selectList(new LambdaQueryWrapper<SysUserEntity>()
+                .select(SysUserEntity::getId));
+        for (SysUserEntity user : users) {
+            List<String> roleIds = userRoleMapper.selectList(new LambdaQueryWrapper<SysUserRoleEntity>()
+                    .eq(SysUserRoleEntity::getUserId, user.getId()))
+                    .stream().map(SysUserRoleEntity::getRoleId).collect(Collectors.toList());
+            String authString = roleAuthorityIndex.getAuthString(roleIds);
+            Set<String> indexed = authString == null
+                    ? new HashSet<>() : new HashSet<>(StrUtil.split(authString, ','));
+
+            List<ListAuthDTO> rows = userMapper.listAuthsByUserId(user.getId());
+            Set<String> joinedRoles = rows.stream().map(row -> ROLE_PREFIX + row.getRoleName())
+                    .collect(Collectors.toSet());
+            Set<String> joinedAuths = rows.stream().map(ListAuthDTO::getAuthority).collect(Collectors.toSet());
+
+            // 权限完全一致
+            assertThat(indexed.stream().filter(a -> !a.startsWith(ROLE_PREFIX)).collect(Collectors.toSet()))
+                    .as("用户%s的权限", user.getId())
+                    .isEqualTo(joinedAuths);
+            // 内连接查不到没有任何权限的角色，索引里会多出这些角色，其余角色一致
+            assertThat(indexed.stream().filter(a -> a.startsWith(ROLE_PREFIX)).collect(Collectors.toSet()))
+                    .as("用户%s的角色", user.getId())
+                    .containsAll(joinedRoles);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.izneus.bonfire.module.security;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.izneus.bonfire.common.util.RedisUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Date;
+import java.util.stream.Collectors;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_RENEW;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 会话登记、挤下线、续期和下线，脚本在redis里执行，和contextLoads一样需要连接redis
+ *
+ * @author Izneus
+ * @date 2021/04/12
+ */
+@SpringBootTest
+class SessionRegistryTest {
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+    @Autowired
+    private AuthorityCache authorityCache;
+    @Autowired
+    private JwtConfig jwtConfig;
+    @Autowired
+    private RedisUtil redisUtil;
+
+    private String userId;
+    private Integer maxSessions;
+
+    @BeforeEach
+    void setUp() {
+        userId = IdUtil.fastSimpleUUID();
+        maxSessions = jwtConfig.getMaxSessions();
+        jwtConfig.setMaxSessions(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jwtConfig.setMaxSessions(maxSessions);
+        sessionRegistry.removeAll(userId);
+        redisUtil.del(StrUtil.format(REDIS_KEY_RENEW, jti("a")));
+    }
+
+    @Test
+    void registerWritesAuthoritiesAndSession() {
+        sessionRegistry.register(userId, session(jti("a"), 60), "ROLE_admin,sys:users:list");
+
+        AuthorityCache.Entry entry = authorityCache.get(userId);
+        assertThat(entry.hasSession(jti("a"))).isTrue();
+        assertThat(entry.getAuthorities()).extracting(Object::toString)
+                .containsExactly("ROLE_admin", "sys:users:list");
+        assertThat(sessionRegistry.list(userId)).extracting(SessionInfo::getJti).containsExactly(jti("a"));
+    }
+
+    @Test
+    void registerEvictsEarliestExpiringSessionOverLimit() {
+        sessionRegistry.register(userId, session(jti("a"), 60), null);
+        sessionRegistry.register(userId, session(jti("b"), 120), null);
+        sessionRegistry.register(userId, session(jti("c"), 180), null);
+
+        assertThat(sessionRegistry.list(userId).stream().map(SessionInfo::getJti).collect(Collectors.toList()))
+                .containsExactly(jti("b"), jti("c"));
+        assertThat(authorityCache.get(userId).hasSession(jti("a"))).isFalse();
+    }
+
+    @Test
+    void registerDropsExpiredSessions() {
+        sessionRegistry.register(userId, session(jti("old"), -1), null);
+        sessionRegistry.register(userId, session(jti("new"), 60), null);
+
+        assertThat(sessionRegistry.list(userId)).extracting(SessionInfo::getJti).containsExactly(jti("new"));
+    }
+
+    @Test
+    void renewReturnsSameTokenToConcurrentCallers() {
+        sessionRegistry.register(userId, session(jti("a"), 60), null);
+        long expireAt = System.currentTimeMillis() + 120000;
+
+        assertThat(sessionRegistry.renew(userId, jti("a"), "token1", expireAt)).isEqualTo("token1");
+        // 锁还在，后到的续期拿到先到的新token
+        assertThat(sessionRegistry.renew(userId, jti("a"), "token2", expireAt)).isEqualTo("token1");
+    }
+
+    @Test
+    void removedSessionIsOfflineAndCannotRenew() {
+        sessionRegistry.register(userId, session(jti("a"), 60), null);
+        sessionRegistry.register(userId, session(jti("b"), 60), null);
+
+        assertThat(sessionRegistry.remove(userId, jti("a"))).isTrue();
+        assertThat(sessionRegistry.remove(userId, jti("a"))).isFalse();
+        assertThat(authorityCache.get(userId).hasSession(jti("a"))).isFalse();
+        assertThat(authorityCache.get(userId).hasSession(jti("b"))).isTrue();
+        assertThat(sessionRegistry.renew(userId, jti("a"), "token", System.currentTimeMillis() + 60000)).isNull();
+
+        sessionRegistry.removeAll(userId);
+        assertThat(sessionRegistry.list(userId)).isEmpty();
+        assertThat(authorityCache.get(userId).hasSession(jti("b"))).isFalse();
+    }
+
+    /**
+     * 每个用例的jti不同，续期锁的key不会和之前的用例冲突
+     */
+    private String jti(String name) {
+        return userId + name;
+    }
+
+    private static SessionInfo session(String jti, long expireSeconds) {
+        SessionInfo session = new SessionInfo();
+        session.setJti(jti);
+        session.setLoginTime(new Date());
+        session.setExpireTime(new Date(System.currentTimeMillis() + expireSeconds * 1000));
+        return session;
+    }
+}
@@ -0,0 +1,138 @@
+package com.izneus.bonfire.module.security;
+
+import com.izneus.bonfire.common.util.RedisUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.izneus.bonfire.common.constant.Constant.REDIS_KEY_BLACKLIST_INDEX;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class TokenBlacklistTest {
+
+    private RedisUtil redisUtil;
+    private TokenBlacklist blacklist;
+
+    @BeforeEach
+    void setUp() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setExpire(1800L);
+        jwtConfig.setBlacklistCapacity(1000);
+        jwtConfig.setBlacklistFpp(0.0001);
+        redisUtil = mock(RedisUtil.class);
+        when(redisUtil.hasKey(anyString())).thenReturn(true);
+        blacklist = new TokenBlacklist(jwtConfig, redisUtil, mock(RedisMessageListenerContainer.class),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndFewFalsePositives() {
+        TokenBlacklist.BloomFilter filter = new TokenBlacklist.BloomFilter(1000, 0.01);
+        Set<String> added = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            String jti = UUID.randomUUID().toString().replace("-", "");
+            filter.put(jti);
+            added.add(jti);
+        }
+        assertThat(added).allMatch(filter::mightContain);
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString().replace("-", ""))) {
+                falsePositives++;
+            }
+        }
+        // 误判率1%，留出余量
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void unrevokedTokenDoesNotHitRedis() {
+        assertThat(blacklist.isRevoked("jti-unknown")).isFalse();
+        assertThat(blacklist.isRevoked(null)).isFalse();
+        verify(redisUtil, never()).hasKey(anyString());
+    }
+
+    @Test
+    void revokedTokenIsConfirmedInRedis() {
+        blacklist.revoke("jti-revoked");
+
+        assertThat(blacklist.isRevoked("jti-revoked")).isTrue();
+        verify(redisUtil).hasKey("blacklist:jti-revoked");
+    }
+
+    @Test
+    void rebuildDropsJtisMissingFromIndex() {
+        blacklist.revoke("jti-expired");
+        when(redisUtil.zRemoveRangeByScoreAndGetAll(eq(REDIS_KEY_BLACKLIST_INDEX), anyDouble(), anyDouble()))
+                .thenReturn(Collections.<Object>singleton("jti-live"));
+
+        blacklist.rebuild();
+
+        assertThat(blacklist.isRevoked("jti-expired")).isFalse();
+        assertThat(blacklist.isRevoked("jti-live")).isTrue();
+    }
+
+    @Test
+    void revocationDuringRebuildIsWrittenToBothFilters() {
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(new byte[0]);
+        when(redisUtil.deserialize(any())).thenReturn("jti-concurrent");
+        // 读索引的同时收到其他节点的吊销消息，索引快照里还没有这个jti
+        when(redisUtil.zRemoveRangeByScoreAndGetAll(eq(REDIS_KEY_BLACKLIST_INDEX), anyDouble(), anyDouble()))
+                .thenAnswer(invocation -> {
+                    blacklist.onMessage(message, null);
+                    return Collections.singleton("jti-live");
+                });
+
+        blacklist.rebuild();
+
+        assertThat(blacklist.isRevoked("jti-concurrent")).isTrue();
+        assertThat(blacklist.isRevoked("jti-live")).isTrue();
+    }
+
+    @Test
+    void rebuildRacingWithLocalRevokeKeepsJti() {
+        // 最坏的情况：本节点的重建在索引写入之前读完了索引并替换了过滤器
+        when(redisUtil.pipelined(any())).thenAnswer(invocation -> {
+            blacklist.rebuild();
+            return Collections.emptyList();
+        });
+        when(redisUtil.zRemoveRangeByScoreAndGetAll(eq(REDIS_KEY_BLACKLIST_INDEX), anyDouble(), anyDouble()))
+                .thenReturn(Collections.emptySet());
+
+        blacklist.revoke("jti-racing");
+
+        assertThat(blacklist.isRevoked("jti-racing")).isTrue();
+    }
+
+    @Test
+    void failedRebuildKeepsCurrentFilter() {
+        blacklist.revoke("jti-revoked");
+        when(redisUtil.zRemoveRangeByScoreAndGetAll(eq(REDIS_KEY_BLACKLIST_INDEX), anyDouble(), anyDouble()))
+                .thenThrow(new IllegalStateException("redis down"));
+
+        blacklist.rebuild();
+
+        assertThat(blacklist.isRevoked("jti-revoked")).isTrue();
+    }
+}
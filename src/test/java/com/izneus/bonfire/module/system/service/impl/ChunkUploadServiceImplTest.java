@@ -0,0 +1,249 @@
+package com.izneus.bonfire.module.system.service.impl;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.izneus.bonfire.common.constant.ErrorCode;
+import com.izneus.bonfire.common.exception.BadRequestException;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.security.SecurityUser;
+import com.izneus.bonfire.module.system.controller.v1.query.ChunkUploadQuery;
+import com.izneus.bonfire.module.system.controller.v1.vo.ChunkUploadVO;
+import com.izneus.bonfire.module.system.entity.SysFileEntity;
+import com.izneus.bonfire.module.system.service.SysFileService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * redis用内存里的map和位图代替，uploadPath为临时目录
+ *
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class ChunkUploadServiceImplTest {
+
+    /**
+     * 10字节，分片大小4字节，分为4、4、2三个分片
+     */
+    private static final byte[] DATA = "0123456789".getBytes(StandardCharsets.UTF_8);
+    private static final long CHUNK_SIZE = 4;
+
+    @TempDir
+    Path uploadPath;
+
+    private RedisUtil redisUtil;
+    private SysFileService fileService;
+    private ChunkUploadServiceImpl service;
+    private final Map<String, Object> values = new HashMap<>();
+    private final BitSet chunks = new BitSet();
+
+    @BeforeEach
+    void setUp() {
+        BonfireConfig.BonfirePath path = new BonfireConfig.BonfirePath();
+        path.setUploadPath(uploadPath.toString());
+        path.setTempPath(uploadPath.toString());
+        BonfireConfig bonfireConfig = new BonfireConfig();
+        bonfireConfig.setLinux(path);
+        bonfireConfig.setMac(path);
+        bonfireConfig.setWin(path);
+        bonfireConfig.getUpload().setChunkSize(CHUNK_SIZE);
+
+        redisUtil = mock(RedisUtil.class);
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(redisUtil).set(anyString(), any(), anyLong());
+        when(redisUtil.get(anyString())).thenAnswer(invocation -> values.get(invocation.<String>getArgument(0)));
+        when(redisUtil.getAndDelete(anyString()))
+                .thenAnswer(invocation -> values.remove(invocation.<String>getArgument(0)));
+        // 每个用例只有一个上传，位图不区分key
+        doAnswer(invocation -> {
+            chunks.set(invocation.<Long>getArgument(1).intValue());
+            return null;
+        }).when(redisUtil).setBit(anyString(), anyLong());
+        when(redisUtil.bitCount(anyString())).thenAnswer(invocation -> (long) chunks.cardinality());
+        when(redisUtil.getBits(anyString())).thenAnswer(invocation -> redisBits());
+
+        fileService = mock(SysFileService.class);
+        service = new ChunkUploadServiceImpl(bonfireConfig, redisUtil, fileService);
+        login("u1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void initPreallocatesPartFile() {
+        ChunkUploadVO upload = init();
+
+        assertThat(upload.getChunkCount()).isEqualTo(3);
+        assertThat(upload.getChunkSize()).isEqualTo(CHUNK_SIZE);
+        assertThat(upload.getUploadedChunks()).isEmpty();
+        File[] parts = uploadPath.toFile().listFiles((dir, name) -> name.endsWith(".part"));
+        assertThat(parts).hasSize(1);
+        assertThat(parts[0].length()).isEqualTo(DATA.length);
+    }
+
+    @Test
+    void indexOutOfRangeIsRejected() {
+        String uploadId = init().getId();
+
+        assertErrorCode(() -> upload(uploadId, 3, chunk(2)), ErrorCode.INVALID_ARGUMENT);
+        assertErrorCode(() -> upload(uploadId, -1, chunk(0)), ErrorCode.INVALID_ARGUMENT);
+        verify(redisUtil, never()).setBit(anyString(), anyLong());
+    }
+
+    @Test
+    void checksumMismatchIsNotRecorded() {
+        String uploadId = init().getId();
+
+        assertErrorCode(() -> service.uploadChunk(uploadId, 0, checksum(chunk(1)),
+                new ByteArrayInputStream(chunk(0))), ErrorCode.INVALID_ARGUMENT);
+
+        verify(redisUtil, never()).setBit(anyString(), anyLong());
+        assertThat(service.getUpload(uploadId).getUploadedChunks()).isEmpty();
+    }
+
+    @Test
+    void wrongChunkSizeIsRejected() {
+        String uploadId = init().getId();
+        byte[] shorter = "012".getBytes(StandardCharsets.UTF_8);
+        byte[] longer = "01234".getBytes(StandardCharsets.UTF_8);
+
+        assertErrorCode(() -> upload(uploadId, 0, shorter), ErrorCode.INVALID_ARGUMENT);
+        assertErrorCode(() -> upload(uploadId, 0, longer), ErrorCode.INVALID_ARGUMENT);
+        // 最后一个分片也必须和剩余大小一致
+        assertErrorCode(() -> upload(uploadId, 2, chunk(0)), ErrorCode.INVALID_ARGUMENT);
+        verify(redisUtil, never()).setBit(anyString(), anyLong());
+    }
+
+    @Test
+    void uploadedChunksAreReportedForResume() {
+        String uploadId = init().getId();
+
+        upload(uploadId, 2, chunk(2));
+        upload(uploadId, 0, chunk(0));
+
+        assertThat(service.getUpload(uploadId).getUploadedChunks()).containsExactly(0, 2);
+    }
+
+    @Test
+    void completeWithMissingChunksFails() {
+        String uploadId = init().getId();
+        upload(uploadId, 0, chunk(0));
+        upload(uploadId, 2, chunk(2));
+
+        assertErrorCode(() -> service.completeUpload(uploadId), ErrorCode.FAILED_PRECONDITION);
+
+        // 上传还在，补传后可以完成
+        verify(fileService, never()).save(any());
+        upload(uploadId, 1, chunk(1));
+        service.completeUpload(uploadId);
+    }
+
+    @Test
+    void completeRenamesPartFileAndSavesRecord() {
+        String uploadId = init().getId();
+        // 分片可以乱序上传
+        upload(uploadId, 1, chunk(1));
+        upload(uploadId, 2, chunk(2));
+        upload(uploadId, 0, chunk(0));
+
+        service.completeUpload(uploadId);
+
+        ArgumentCaptor<SysFileEntity> captor = ArgumentCaptor.forClass(SysFileEntity.class);
+        verify(fileService).save(captor.capture());
+        SysFileEntity entity = captor.getValue();
+        assertThat(entity.getFilename()).isEqualTo("data.txt");
+        assertThat(entity.getSuffix()).isEqualTo("txt");
+        assertThat(entity.getFileSize()).isEqualTo((long) DATA.length);
+        File file = uploadPath.resolve(entity.getUniqueFilename()).toFile();
+        assertThat(FileUtil.readBytes(file)).isEqualTo(DATA);
+        assertThat(uploadPath.toFile().list((dir, name) -> name.endsWith(".part"))).isEmpty();
+        // 重复完成和之后的分片都当作不存在
+        assertErrorCode(() -> service.completeUpload(uploadId), ErrorCode.NOT_FOUND);
+        assertErrorCode(() -> upload(uploadId, 0, chunk(0)), ErrorCode.NOT_FOUND);
+    }
+
+    @Test
+    void otherUsersUploadIsNotFound() {
+        String uploadId = init().getId();
+
+        login("u2");
+
+        assertErrorCode(() -> upload(uploadId, 0, chunk(0)), ErrorCode.NOT_FOUND);
+        assertErrorCode(() -> service.completeUpload(uploadId), ErrorCode.NOT_FOUND);
+    }
+
+    private ChunkUploadVO init() {
+        ChunkUploadQuery query = new ChunkUploadQuery();
+        query.setFilename("data.txt");
+        query.setFileSize((long) DATA.length);
+        return service.initUpload(query);
+    }
+
+    private void upload(String uploadId, int index, byte[] data) {
+        service.uploadChunk(uploadId, index, checksum(data), new ByteArrayInputStream(data));
+    }
+
+    private static byte[] chunk(int index) {
+        int from = (int) (index * CHUNK_SIZE);
+        int to = (int) Math.min(from + CHUNK_SIZE, DATA.length);
+        byte[] chunk = new byte[to - from];
+        System.arraycopy(DATA, from, chunk, 0, chunk.length);
+        return chunk;
+    }
+
+    private static String checksum(byte[] data) {
+        return Base64.encode(DigestUtil.md5(data));
+    }
+
+    /**
+     * redis位图的字节序，第n位在第n/8个字节的高位起第n%8位
+     */
+    private byte[] redisBits() {
+        byte[] bits = new byte[(chunks.length() + 7) / 8];
+        for (int i = chunks.nextSetBit(0); i >= 0; i = chunks.nextSetBit(i + 1)) {
+            bits[i / 8] |= 0x80 >>> (i % 8);
+        }
+        return bits;
+    }
+
+    private static void login(String userId) {
+        SecurityUser user = new SecurityUser(userId, userId, "", Collections.emptyList());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    private static void assertErrorCode(Runnable action, ErrorCode errorCode) {
+        assertThatThrownBy(action::run)
+                .isInstanceOf(BadRequestException.class)
+                .hasFieldOrPropertyWithValue("errorCode", errorCode);
+    }
+}
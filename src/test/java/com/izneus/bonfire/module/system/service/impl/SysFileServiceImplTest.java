@@ -0,0 +1,152 @@
+package com.izneus.bonfire.module.system.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.security.JwtUtil;
+import com.izneus.bonfire.module.system.controller.v1.SysFileController;
+import com.izneus.bonfire.module.system.service.ChunkUploadService;
+import io.jsonwebtoken.impl.DefaultClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static com.izneus.bonfire.common.constant.Constant.UPLOAD_FILE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 经过controller下载，Range由spring的HttpEntityMethodProcessor处理
+ *
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class SysFileServiceImplTest {
+
+    private static final String URL = "/api/v1/files:download";
+    private static final String CONTENT = "0123456789abcdefghij";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    @TempDir
+    Path uploadPath;
+
+    private DefaultClaims claims;
+    private File file;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        BonfireConfig.BonfirePath path = new BonfireConfig.BonfirePath();
+        path.setUploadPath(uploadPath.toString());
+        path.setTempPath(uploadPath.toString());
+        BonfireConfig bonfireConfig = new BonfireConfig();
+        bonfireConfig.setLinux(path);
+        bonfireConfig.setMac(path);
+        bonfireConfig.setWin(path);
+
+        file = FileUtil.writeString(CONTENT, uploadPath.resolve("report.txt").toFile(), StandardCharsets.UTF_8);
+        claims = new DefaultClaims();
+        claims.put("filename", file.getName());
+        claims.put("fileType", UPLOAD_FILE);
+        JwtUtil jwtUtil = mock(JwtUtil.class);
+        when(jwtUtil.getClaims(anyString())).thenReturn(claims);
+
+        SysFileController controller = new SysFileController(new SysFileServiceImpl(bonfireConfig, jwtUtil),
+                mock(ChunkUploadService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void fullDownload() throws Exception {
+        mockMvc.perform(get(URL).param("token", "t"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    void rangeReturnsPartialContent() throws Exception {
+        mockMvc.perform(get(URL).param("token", "t").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/" + CONTENT.length()))
+                .andExpect(content().string("2345"));
+
+        mockMvc.perform(get(URL).param("token", "t").header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("hij"));
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+        mockMvc.perform(get(URL).param("token", "t").header(HttpHeaders.RANGE, "bytes=100-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+    @Test
+    void matchingEtagReturnsNotModified() throws Exception {
+        String etag = mockMvc.perform(get(URL).param("token", "t"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(URL).param("token", "t").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void changedFileGetsNewEtag() throws Exception {
+        String etag = mockMvc.perform(get(URL).param("token", "t"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        FileUtil.appendUtf8String("klm", file);
+
+        mockMvc.perform(get(URL).param("token", "t").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT + "klm"));
+    }
+
+    @Test
+    void fullDownloadUsesSendfileWhenSupported() throws Exception {
+        MvcResult result = mockMvc.perform(get(URL).param("token", "t").requestAttr(SENDFILE_SUPPORT, true))
+                .andExpect(status().isOk())
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", file.getAbsolutePath()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 0L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", (long) CONTENT.length()))
+                .andReturn();
+
+        // 响应体由tomcat发送
+        assertThat(result.getResponse().getContentLength()).isEqualTo(CONTENT.length());
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void rangeDoesNotUseSendfile() throws Exception {
+        mockMvc.perform(get(URL).param("token", "t").requestAttr(SENDFILE_SUPPORT, true)
+                .header(HttpHeaders.RANGE, "bytes=0-0"))
+                .andExpect(status().isPartialContent())
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", (Object) null))
+                .andExpect(content().string("0"));
+    }
+
+    @Test
+    void missingFileIsNotFound() throws Exception {
+        claims.put("filename", "missing.txt");
+
+        mockMvc.perform(get(URL).param("token", "t"))
+                .andExpect(status().isNotFound());
+    }
+}
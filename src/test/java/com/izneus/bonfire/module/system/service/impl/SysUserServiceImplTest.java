@@ -0,0 +1,128 @@
+package com.izneus.bonfire.module.system.service.impl;
+
+import cn.hutool.poi.excel.ExcelReader;
+import cn.hutool.poi.excel.ExcelUtil;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.izneus.bonfire.common.util.RedisUtil;
+import com.izneus.bonfire.config.BonfireConfig;
+import com.izneus.bonfire.module.security.PasswordHasher;
+import com.izneus.bonfire.module.security.SessionRegistry;
+import com.izneus.bonfire.module.system.controller.v1.query.ListUserQuery;
+import com.izneus.bonfire.module.system.entity.SysUserEntity;
+import com.izneus.bonfire.module.system.mapper.SysUserMapper;
+import com.izneus.bonfire.module.system.service.SysFileService;
+import com.izneus.bonfire.module.system.service.SysUserRoleService;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 导出用mock的mapper逐行回调ResultHandler，模拟数据库游标
+ *
+ * @author Izneus
+ * @date 2021/04/12
+ */
+class SysUserServiceImplTest {
+
+    private static final int ROWS = 5000;
+
+    @TempDir
+    Path tempPath;
+
+    private SysUserServiceImpl service;
+    private int rows;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // lambda条件需要实体的字段映射，单元测试里没有mybatis-plus的自动配置
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""),
+                SysUserEntity.class);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        SysUserMapper mapper = mock(SysUserMapper.class);
+        doAnswer(invocation -> {
+            ResultHandler<SysUserEntity> handler = invocation.getArgument(1);
+            DefaultResultContext<SysUserEntity> context = new DefaultResultContext<>();
+            for (int i = 0; i < rows; i++) {
+                context.nextResultObject(user(i));
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(mapper).exportUsers(any(), any(ResultHandler.class));
+        service = new SysUserServiceImpl(new BonfireConfig(), mock(SysUserRoleService.class),
+                mock(SysFileService.class), mock(RedisUtil.class), mock(SessionRegistry.class),
+                mock(PasswordHasher.class), mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(service, "baseMapper", mapper);
+    }
+
+    @Test
+    void exportStreamsAllRows() {
+        rows = ROWS;
+        File file = tempPath.resolve("users.xlsx").toFile();
+        List<Long> progress = new ArrayList<>();
+
+        long count = service.exportUsers(new ListUserQuery(), file.getPath(), progress::add);
+
+        assertThat(count).isEqualTo(ROWS);
+        // 每行回调一次，值为已处理的总行数
+        assertThat(progress).hasSize(ROWS);
+        assertThat(progress.get(0)).isEqualTo(1L);
+        assertThat(progress.get(ROWS - 1)).isEqualTo((long) ROWS);
+
+        try (ExcelReader reader = ExcelUtil.getReader(file)) {
+            Sheet sheet = reader.getSheet();
+            // 表头加数据行，超过sxssf的内存窗口，中间的行已经刷到磁盘
+            assertThat(reader.getRowCount()).isEqualTo(ROWS + 1);
+            assertThat(reader.readRow(ROWS).get(1)).isEqualTo("user" + (ROWS - 1));
+            for (int i = 0; i < SysUserServiceImpl.EXPORT_COLUMN_WIDTHS.length; i++) {
+                assertThat(sheet.getColumnWidth(i)).isEqualTo(SysUserServiceImpl.EXPORT_COLUMN_WIDTHS[i] * 256);
+            }
+        }
+    }
+
+    @Test
+    void emptyExportWritesHeaderOnly() {
+        rows = 0;
+        File file = tempPath.resolve("empty.xlsx").toFile();
+        List<Long> progress = new ArrayList<>();
+
+        long count = service.exportUsers(new ListUserQuery(), file.getPath(), progress::add);
+
+        assertThat(count).isZero();
+        assertThat(progress).isEmpty();
+        try (ExcelReader reader = ExcelUtil.getReader(file)) {
+            assertThat(reader.getRowCount()).isEqualTo(1);
+        }
+    }
+
+    private static SysUserEntity user(int i) {
+        SysUserEntity user = new SysUserEntity();
+        user.setId(String.valueOf(i));
+        user.setUsername("user" + i);
+        user.setCreateTime(new Date());
+        user.setStatus("1");
+        return user;
+    }
+}